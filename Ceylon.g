@@ -85,7 +85,7 @@ compilationUnit returns [CompilationUnit compilationUnit]
     : (
         ca=compilerAnnotations
         SEMICOLON
-        { $compilationUnit.getCompilerAnnotations().addAll($ca.annotations); }
+        { $compilationUnit.addCompilerAnnotations($ca.annotations); }
       )?
       ( 
         importDeclaration 
@@ -115,7 +115,7 @@ toplevelDeclaration returns [Declaration declaration]
       d=declaration
       { $declaration = $d.declaration;
         if ($declaration!=null)
-            $declaration.getCompilerAnnotations().addAll($ca.annotations); }
+            $declaration.addCompilerAnnotations($ca.annotations); }
     ;
 
 annotatedModuleDescriptorStart
@@ -131,7 +131,7 @@ moduleDescriptor returns [ModuleDescriptor moduleDescriptor]
       MODULE 
       { $moduleDescriptor = new ModuleDescriptor($MODULE); 
         $moduleDescriptor.setAnnotationList($annotations.annotationList);
-        $moduleDescriptor.getCompilerAnnotations().addAll($compilerAnnotations.annotations); }
+        $moduleDescriptor.addCompilerAnnotations($compilerAnnotations.annotations); }
       packagePath
       { $moduleDescriptor.setImportPath($packagePath.importPath); }
       (
@@ -156,7 +156,7 @@ importModuleList returns [ImportModuleList importModuleList]
           if ($importModule.importModule!=null)
               $importModule.importModule.setAnnotationList($annotations.annotationList);
           if ($importModule.importModule!=null)
-              $importModule.importModule.getCompilerAnnotations().addAll($compilerAnnotations.annotations); }
+              $importModule.importModule.addCompilerAnnotations($compilerAnnotations.annotations); }
       )*
       RBRACE
       { $importModuleList.setEndToken($RBRACE); }
@@ -167,7 +167,7 @@ packageDescriptor returns [PackageDescriptor packageDescriptor]
       PACKAGE 
       { $packageDescriptor = new PackageDescriptor($PACKAGE); 
         $packageDescriptor.setAnnotationList($annotations.annotationList); 
-        $packageDescriptor.getCompilerAnnotations().addAll($compilerAnnotations.annotations); }
+        $packageDescriptor.addCompilerAnnotations($compilerAnnotations.annotations); }
       packagePath
       { $packageDescriptor.setImportPath($packagePath.importPath); 
         expecting=SEMICOLON; }
@@ -279,7 +279,7 @@ importElement returns [ImportMemberOrType importMemberOrType]
       )?
     )
     { if ($importMemberOrType!=null)
-        $importMemberOrType.getCompilerAnnotations().addAll($compilerAnnotations.annotations); }
+        $importMemberOrType.addCompilerAnnotations($compilerAnnotations.annotations); }
     ;
 
 importWildcard returns [ImportWildcard importWildcard]
@@ -596,7 +596,7 @@ variadicVariable returns [Variable variable]
     @init { $variable = new Variable(null); 
             Type t = new ValueModifier(null); }
     : compilerAnnotations
-      { $variable.getCompilerAnnotations().addAll($compilerAnnotations.annotations); }
+      { $variable.addCompilerAnnotations($compilerAnnotations.annotations); }
       (
         unionType
         { t = $unionType.type; }
@@ -1249,7 +1249,7 @@ parameter returns [ParameterDeclaration parameter]
       annotations
       parameterDeclaration
       { TypedDeclaration d = $parameterDeclaration.declaration;
-        d.getCompilerAnnotations().addAll($compilerAnnotations.annotations);
+        d.addCompilerAnnotations($compilerAnnotations.annotations);
         d.setAnnotationList($annotations.annotationList);
         if (d instanceof AttributeDeclaration) {
             ValueParameterDeclaration vp = new ValueParameterDeclaration(null);
@@ -1363,7 +1363,7 @@ typeParameter returns [TypeParameterDeclaration typeParameter]
         typeDefault
         { $typeParameter.setTypeSpecifier($typeDefault.typeSpecifier); }
       )?
-      { $typeParameter.getCompilerAnnotations().addAll($compilerAnnotations.annotations); }
+      { $typeParameter.addCompilerAnnotations($compilerAnnotations.annotations); }
     ;
 
 variance returns [TypeVariance typeVariance]
@@ -1377,7 +1377,7 @@ typeConstraint returns [TypeConstraint typeConstraint]
     : compilerAnnotations
       TYPE_CONSTRAINT
       { $typeConstraint = new TypeConstraint($TYPE_CONSTRAINT); 
-        $typeConstraint.getCompilerAnnotations().addAll($compilerAnnotations.annotations); }
+        $typeConstraint.addCompilerAnnotations($compilerAnnotations.annotations); }
       (
         typeNameDeclaration 
         { $typeConstraint.setIdentifier($typeNameDeclaration.identifier); }
@@ -1460,7 +1460,7 @@ declarationOrStatement returns [Statement statement]
         { $statement=$s.statement; }
       )
       { if ($statement!=null)
-            $statement.getCompilerAnnotations().addAll($compilerAnnotations.annotations); }
+            $statement.addCompilerAnnotations($compilerAnnotations.annotations); }
     ;
 
 declaration returns [Declaration declaration]
@@ -2082,7 +2082,7 @@ namedArguments returns [NamedArgumentList namedArgumentList]
 sequencedArgument returns [SequencedArgument sequencedArgument]
     : compilerAnnotations
       { $sequencedArgument = new SequencedArgument(null);
-        $sequencedArgument.getCompilerAnnotations().addAll($compilerAnnotations.annotations); }
+        $sequencedArgument.addCompilerAnnotations($compilerAnnotations.annotations); }
         (
           (FOR_CLAUSE | IF_CLAUSE conditions ~THEN_CLAUSE)=>
           c1=comprehension
@@ -2133,7 +2133,7 @@ namedArgument returns [NamedArgument namedArgument]
       { $namedArgument = $namedArgumentDeclaration.declaration; }
     )
     { if ($namedArgument!=null)
-          namedArgument.getCompilerAnnotations().addAll($compilerAnnotations.annotations); }
+          namedArgument.addCompilerAnnotations($compilerAnnotations.annotations); }
     ;
 
 namedSpecifiedArgument returns [SpecifiedArgument specifiedArgument]
@@ -4162,7 +4162,7 @@ variable returns [Variable variable]
     : compilerAnnotations
       var
       { $variable=$var.variable;
-        $variable.getCompilerAnnotations().addAll($compilerAnnotations.annotations); }
+        $variable.addCompilerAnnotations($compilerAnnotations.annotations); }
     ;
     
 var returns [Variable variable]
@@ -0,0 +1,121 @@
+package com.redhat.ceylon.compiler.typechecker.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.redhat.ceylon.compiler.typechecker.TypeChecker;
+import com.redhat.ceylon.compiler.typechecker.TypeCheckerBuilder;
+import com.redhat.ceylon.compiler.typechecker.context.Phase;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
+import com.redhat.ceylon.compiler.typechecker.io.impl.Helper;
+
+/**
+ * The sources a benchmark runs over: either a source
+ * directory, by default {@code test/main}, or a
+ * {@linkplain SyntheticCorpus synthetic corpus} of a
+ * given number of units, written {@code synthetic:N}.
+ * Paths are relative to the root of the project.
+ */
+@State(Scope.Benchmark)
+public abstract class CorpusState {
+
+    private static final String SYNTHETIC = "synthetic:";
+
+    @Param({"test/main", "synthetic:100", "synthetic:1000"})
+    public String corpus;
+
+    private File directory;
+    private List<char[]> sources;
+    private TypeCheckerBuilder builder;
+
+    @Setup(Level.Trial)
+    public void prepareCorpus() throws IOException {
+        if (corpus.startsWith(SYNTHETIC)) {
+            int units = Integer.parseInt(
+                    corpus.substring(SYNTHETIC.length()));
+            directory = SyntheticCorpus.createUnits(units);
+        }
+        else {
+            directory = new File(corpus);
+            if (!directory.isDirectory()) {
+                throw new IllegalArgumentException(
+                        "not a source directory: " + corpus);
+            }
+        }
+        sources = new ArrayList<char[]>();
+        readSources(directory);
+        builder = new TypeCheckerBuilder()
+                .verbose(false)
+                .statistics(false)
+                .addSrcDirectory(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void disposeCorpus() {
+        if (corpus.startsWith(SYNTHETIC)) {
+            SyntheticCorpus.delete(directory);
+        }
+    }
+
+    private void readSources(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children!=null) {
+            for (File child: children) {
+                readSources(child);
+            }
+        }
+        else if (file.getName().endsWith(".ceylon")) {
+            byte[] content = Files.readAllBytes(file.toPath());
+            sources.add(Helper.decode(content, "UTF-8"));
+        }
+    }
+
+    /**
+     * The decoded content of every source file.
+     */
+    public List<char[]> getSources() {
+        return sources;
+    }
+
+    /**
+     * Parse the corpus with a new type checker, and run
+     * every phase which comes before the given phase, or
+     * every phase if it is null.
+     */
+    public TypeChecker typeCheckBefore(Phase phase) {
+        TypeChecker typeChecker = builder.getTypeChecker();
+        typeChecker.processModules();
+        for (Phase p: Phase.values()) {
+            if (p==phase) {
+                break;
+            }
+            run(typeChecker, p);
+        }
+        return typeChecker;
+    }
+
+    /**
+     * Run the given phase for every unit, one after the
+     * other.
+     */
+    public static void run(TypeChecker typeChecker, Phase phase) {
+        for (PhasedUnit pu: units(typeChecker)) {
+            phase.run(pu);
+        }
+    }
+
+    public static List<PhasedUnit> units(TypeChecker typeChecker) {
+        return typeChecker.getPhasedUnits().getPhasedUnits();
+    }
+
+}
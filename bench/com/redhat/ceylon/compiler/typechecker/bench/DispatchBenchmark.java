@@ -0,0 +1,214 @@
+package com.redhat.ceylon.compiler.typechecker.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer;
+import com.redhat.ceylon.compiler.typechecker.parser.CeylonParser;
+import com.redhat.ceylon.compiler.typechecker.tree.IterativeWalker;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
+import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
+
+/**
+ * Compares the double dispatch of {@link Visitor}, through
+ * {@link Node#visit(Visitor)}, with the switch on
+ * {@link Node#getNodeKind()} of {@link KindVisitor}, by
+ * walking the parsed trees of the corpus with the same
+ * visitor written both ways. Also compares a chain of
+ * {@code instanceof} tests with a switch on the kind, over
+ * every node of the corpus, where the switch must also
+ * list the kinds of the subclasses. The sources are parsed
+ * beforehand, so parsing isn't measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5)
+@Measurement(iterations=10)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Trees extends CorpusState {
+
+        List<Tree.CompilationUnit> units;
+        List<Node> nodes;
+
+        @Setup(Level.Trial)
+        public void parseCorpus() throws RecognitionException {
+            units = new ArrayList<Tree.CompilationUnit>();
+            for (char[] source: getSources()) {
+                CeylonLexer lexer = new CeylonLexer(
+                        new ANTLRStringStream(source, source.length));
+                CeylonParser parser = new CeylonParser(
+                        new CommonTokenStream(lexer));
+                units.add(parser.compilationUnit());
+            }
+            nodes = new ArrayList<Node>();
+            for (Tree.CompilationUnit unit: units) {
+                IterativeWalker.walk(new Visitor() {
+                    @Override
+                    public boolean enter(Node that) {
+                        nodes.add(that);
+                        return true;
+                    }
+                },
+                unit);
+            }
+        }
+    }
+
+    static class Counter extends Visitor {
+        int declarations;
+        int terms;
+        int references;
+        @Override
+        public void visit(Tree.Declaration that) {
+            declarations++;
+            super.visit(that);
+        }
+        @Override
+        public void visit(Tree.Term that) {
+            terms++;
+            super.visit(that);
+        }
+        @Override
+        public void visit(Tree.BaseMemberExpression that) {
+            references++;
+            super.visit(that);
+        }
+        @Override
+        public void visit(Tree.QualifiedMemberExpression that) {
+            references++;
+            super.visit(that);
+        }
+        int count() {
+            return declarations + terms + references;
+        }
+    }
+
+    static class KindCounter extends KindVisitor {
+        int declarations;
+        int terms;
+        int references;
+        @Override
+        public void visit(Tree.Declaration that) {
+            declarations++;
+            super.visit(that);
+        }
+        @Override
+        public void visit(Tree.Term that) {
+            terms++;
+            super.visit(that);
+        }
+        @Override
+        public void visit(Tree.BaseMemberExpression that) {
+            references++;
+            super.visit(that);
+        }
+        @Override
+        public void visit(Tree.QualifiedMemberExpression that) {
+            references++;
+            super.visit(that);
+        }
+        int count() {
+            return declarations + terms + references;
+        }
+    }
+
+    @Benchmark
+    public int doubleDispatch(Trees trees) {
+        Counter counter = new Counter();
+        for (Tree.CompilationUnit unit: trees.units) {
+            unit.visit(counter);
+        }
+        return counter.count();
+    }
+
+    @Benchmark
+    public int kindDispatch(Trees trees) {
+        KindCounter counter = new KindCounter();
+        for (Tree.CompilationUnit unit: trees.units) {
+            counter.dispatch(unit);
+        }
+        return counter.count();
+    }
+
+    @Benchmark
+    public int instanceofChain(Trees trees) {
+        int count = 0;
+        for (Node node: trees.nodes) {
+            if (node instanceof Tree.BaseMemberExpression) {
+                count += 1;
+            }
+            else if (node instanceof Tree.QualifiedMemberExpression) {
+                count += 2;
+            }
+            else if (node instanceof Tree.InvocationExpression) {
+                count += 3;
+            }
+            else if (node instanceof Tree.StringLiteral) {
+                count += 4;
+            }
+            else if (node instanceof Tree.NaturalLiteral) {
+                count += 5;
+            }
+            else if (node instanceof Tree.AttributeDeclaration) {
+                count += 6;
+            }
+            else if (node instanceof Tree.Identifier) {
+                count += 7;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int kindSwitch(Trees trees) {
+        int count = 0;
+        for (Node node: trees.nodes) {
+            switch (node.getNodeKind()) {
+            case Tree.BaseMemberExpression.KIND:
+                count += 1;
+                break;
+            case Tree.QualifiedMemberExpression.KIND:
+                count += 2;
+                break;
+            case Tree.InvocationExpression.KIND:
+            case Tree.Annotation.KIND:
+                count += 3;
+                break;
+            case Tree.StringLiteral.KIND:
+                count += 4;
+                break;
+            case Tree.NaturalLiteral.KIND:
+                count += 5;
+                break;
+            case Tree.AttributeDeclaration.KIND:
+                count += 6;
+                break;
+            case Tree.Identifier.KIND:
+                count += 7;
+                break;
+            }
+        }
+        return count;
+    }
+
+}
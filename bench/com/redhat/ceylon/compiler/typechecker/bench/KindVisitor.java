@@ -0,0 +1,783 @@
+package com.redhat.ceylon.compiler.typechecker.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
+import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
+
+/**
+ * A visitor which dispatches each node to the
+ * {@code visit()} method for its type by switching on
+ * {@link Node#getNodeKind()}, instead of by double
+ * dispatch through {@link Node#visit(Visitor)}, and
+ * walks the children of the node the same way, for
+ * {@link DispatchBenchmark}. Start the walk with
+ * {@link #dispatch(Node)}.
+ *
+ * It's slower than the double dispatch of
+ * {@link Visitor}, since the switch is too big to
+ * inline, so it's kept here, for comparison, and not
+ * generated with the tree. The cases list every
+ * concrete node class of Ceylon.nodes, and a class
+ * added there must be added here too, since its nodes
+ * would otherwise fall back to double dispatch.
+ */
+public abstract class KindVisitor extends Visitor {
+
+    //the children of the nodes being walked
+    private final List<Node> children = new ArrayList<Node>();
+
+    public void dispatch(Node that) {
+        try {
+            switch (that.getNodeKind()) {
+            case Tree.CompilationUnit.KIND:
+                visit((Tree.CompilationUnit) that);
+                break;
+            case Tree.ModuleDescriptor.KIND:
+                visit((Tree.ModuleDescriptor) that);
+                break;
+            case Tree.PackageDescriptor.KIND:
+                visit((Tree.PackageDescriptor) that);
+                break;
+            case Tree.ImportModuleList.KIND:
+                visit((Tree.ImportModuleList) that);
+                break;
+            case Tree.ImportModule.KIND:
+                visit((Tree.ImportModule) that);
+                break;
+            case Tree.ImportList.KIND:
+                visit((Tree.ImportList) that);
+                break;
+            case Tree.Import.KIND:
+                visit((Tree.Import) that);
+                break;
+            case Tree.ImportPath.KIND:
+                visit((Tree.ImportPath) that);
+                break;
+            case Tree.ImportMemberOrTypeList.KIND:
+                visit((Tree.ImportMemberOrTypeList) that);
+                break;
+            case Tree.ImportMemberOrType.KIND:
+                visit((Tree.ImportMemberOrType) that);
+                break;
+            case Tree.ImportMember.KIND:
+                visit((Tree.ImportMember) that);
+                break;
+            case Tree.ImportType.KIND:
+                visit((Tree.ImportType) that);
+                break;
+            case Tree.Alias.KIND:
+                visit((Tree.Alias) that);
+                break;
+            case Tree.ImportWildcard.KIND:
+                visit((Tree.ImportWildcard) that);
+                break;
+            case Tree.MissingDeclaration.KIND:
+                visit((Tree.MissingDeclaration) that);
+                break;
+            case Tree.TypeAliasDeclaration.KIND:
+                visit((Tree.TypeAliasDeclaration) that);
+                break;
+            case Tree.SatisfiedTypes.KIND:
+                visit((Tree.SatisfiedTypes) that);
+                break;
+            case Tree.AbstractedType.KIND:
+                visit((Tree.AbstractedType) that);
+                break;
+            case Tree.CaseTypes.KIND:
+                visit((Tree.CaseTypes) that);
+                break;
+            case Tree.ExtendedType.KIND:
+                visit((Tree.ExtendedType) that);
+                break;
+            case Tree.TypeConstraintList.KIND:
+                visit((Tree.TypeConstraintList) that);
+                break;
+            case Tree.TypeConstraint.KIND:
+                visit((Tree.TypeConstraint) that);
+                break;
+            case Tree.TypeSpecifier.KIND:
+                visit((Tree.TypeSpecifier) that);
+                break;
+            case Tree.DefaultTypeArgument.KIND:
+                visit((Tree.DefaultTypeArgument) that);
+                break;
+            case Tree.ClassSpecifier.KIND:
+                visit((Tree.ClassSpecifier) that);
+                break;
+            case Tree.AnyClass.KIND:
+                visit((Tree.AnyClass) that);
+                break;
+            case Tree.ClassDefinition.KIND:
+                visit((Tree.ClassDefinition) that);
+                break;
+            case Tree.Enumerated.KIND:
+                visit((Tree.Enumerated) that);
+                break;
+            case Tree.Constructor.KIND:
+                visit((Tree.Constructor) that);
+                break;
+            case Tree.DelegatedConstructor.KIND:
+                visit((Tree.DelegatedConstructor) that);
+                break;
+            case Tree.ClassDeclaration.KIND:
+                visit((Tree.ClassDeclaration) that);
+                break;
+            case Tree.AnyInterface.KIND:
+                visit((Tree.AnyInterface) that);
+                break;
+            case Tree.InterfaceDefinition.KIND:
+                visit((Tree.InterfaceDefinition) that);
+                break;
+            case Tree.InterfaceDeclaration.KIND:
+                visit((Tree.InterfaceDeclaration) that);
+                break;
+            case Tree.AttributeDeclaration.KIND:
+                visit((Tree.AttributeDeclaration) that);
+                break;
+            case Tree.AttributeGetterDefinition.KIND:
+                visit((Tree.AttributeGetterDefinition) that);
+                break;
+            case Tree.AttributeSetterDefinition.KIND:
+                visit((Tree.AttributeSetterDefinition) that);
+                break;
+            case Tree.AnyMethod.KIND:
+                visit((Tree.AnyMethod) that);
+                break;
+            case Tree.MethodDefinition.KIND:
+                visit((Tree.MethodDefinition) that);
+                break;
+            case Tree.MethodDeclaration.KIND:
+                visit((Tree.MethodDeclaration) that);
+                break;
+            case Tree.VoidModifier.KIND:
+                visit((Tree.VoidModifier) that);
+                break;
+            case Tree.ObjectDefinition.KIND:
+                visit((Tree.ObjectDefinition) that);
+                break;
+            case Tree.ParameterList.KIND:
+                visit((Tree.ParameterList) that);
+                break;
+            case Tree.ValueParameterDeclaration.KIND:
+                visit((Tree.ValueParameterDeclaration) that);
+                break;
+            case Tree.FunctionalParameterDeclaration.KIND:
+                visit((Tree.FunctionalParameterDeclaration) that);
+                break;
+            case Tree.InitializerParameter.KIND:
+                visit((Tree.InitializerParameter) that);
+                break;
+            case Tree.TypeParameterList.KIND:
+                visit((Tree.TypeParameterList) that);
+                break;
+            case Tree.TypeParameterDeclaration.KIND:
+                visit((Tree.TypeParameterDeclaration) that);
+                break;
+            case Tree.TypeVariance.KIND:
+                visit((Tree.TypeVariance) that);
+                break;
+            case Tree.Block.KIND:
+                visit((Tree.Block) that);
+                break;
+            case Tree.ClassBody.KIND:
+                visit((Tree.ClassBody) that);
+                break;
+            case Tree.InterfaceBody.KIND:
+                visit((Tree.InterfaceBody) that);
+                break;
+            case Tree.GroupedType.KIND:
+                visit((Tree.GroupedType) that);
+                break;
+            case Tree.BaseType.KIND:
+                visit((Tree.BaseType) that);
+                break;
+            case Tree.QualifiedType.KIND:
+                visit((Tree.QualifiedType) that);
+                break;
+            case Tree.UnionType.KIND:
+                visit((Tree.UnionType) that);
+                break;
+            case Tree.IntersectionType.KIND:
+                visit((Tree.IntersectionType) that);
+                break;
+            case Tree.SequenceType.KIND:
+                visit((Tree.SequenceType) that);
+                break;
+            case Tree.IterableType.KIND:
+                visit((Tree.IterableType) that);
+                break;
+            case Tree.OptionalType.KIND:
+                visit((Tree.OptionalType) that);
+                break;
+            case Tree.TupleType.KIND:
+                visit((Tree.TupleType) that);
+                break;
+            case Tree.FunctionType.KIND:
+                visit((Tree.FunctionType) that);
+                break;
+            case Tree.EntryType.KIND:
+                visit((Tree.EntryType) that);
+                break;
+            case Tree.TypeConstructor.KIND:
+                visit((Tree.TypeConstructor) that);
+                break;
+            case Tree.SuperType.KIND:
+                visit((Tree.SuperType) that);
+                break;
+            case Tree.TypeLiteral.KIND:
+                visit((Tree.TypeLiteral) that);
+                break;
+            case Tree.MemberLiteral.KIND:
+                visit((Tree.MemberLiteral) that);
+                break;
+            case Tree.ClassLiteral.KIND:
+                visit((Tree.ClassLiteral) that);
+                break;
+            case Tree.NewLiteral.KIND:
+                visit((Tree.NewLiteral) that);
+                break;
+            case Tree.InterfaceLiteral.KIND:
+                visit((Tree.InterfaceLiteral) that);
+                break;
+            case Tree.AliasLiteral.KIND:
+                visit((Tree.AliasLiteral) that);
+                break;
+            case Tree.TypeParameterLiteral.KIND:
+                visit((Tree.TypeParameterLiteral) that);
+                break;
+            case Tree.ValueLiteral.KIND:
+                visit((Tree.ValueLiteral) that);
+                break;
+            case Tree.FunctionLiteral.KIND:
+                visit((Tree.FunctionLiteral) that);
+                break;
+            case Tree.ModuleLiteral.KIND:
+                visit((Tree.ModuleLiteral) that);
+                break;
+            case Tree.PackageLiteral.KIND:
+                visit((Tree.PackageLiteral) that);
+                break;
+            case Tree.DynamicModifier.KIND:
+                visit((Tree.DynamicModifier) that);
+                break;
+            case Tree.ValueModifier.KIND:
+                visit((Tree.ValueModifier) that);
+                break;
+            case Tree.FunctionModifier.KIND:
+                visit((Tree.FunctionModifier) that);
+                break;
+            case Tree.SyntheticVariable.KIND:
+                visit((Tree.SyntheticVariable) that);
+                break;
+            case Tree.TypeArguments.KIND:
+                visit((Tree.TypeArguments) that);
+                break;
+            case Tree.TypeArgumentList.KIND:
+                visit((Tree.TypeArgumentList) that);
+                break;
+            case Tree.InferredTypeArguments.KIND:
+                visit((Tree.InferredTypeArguments) that);
+                break;
+            case Tree.SequencedType.KIND:
+                visit((Tree.SequencedType) that);
+                break;
+            case Tree.DefaultedType.KIND:
+                visit((Tree.DefaultedType) that);
+                break;
+            case Tree.SpreadType.KIND:
+                visit((Tree.SpreadType) that);
+                break;
+            case Tree.Return.KIND:
+                visit((Tree.Return) that);
+                break;
+            case Tree.Throw.KIND:
+                visit((Tree.Throw) that);
+                break;
+            case Tree.Continue.KIND:
+                visit((Tree.Continue) that);
+                break;
+            case Tree.Break.KIND:
+                visit((Tree.Break) that);
+                break;
+            case Tree.CompilerAnnotation.KIND:
+                visit((Tree.CompilerAnnotation) that);
+                break;
+            case Tree.Assertion.KIND:
+                visit((Tree.Assertion) that);
+                break;
+            case Tree.SpecifierStatement.KIND:
+                visit((Tree.SpecifierStatement) that);
+                break;
+            case Tree.ExpressionStatement.KIND:
+                visit((Tree.ExpressionStatement) that);
+                break;
+            case Tree.VariablePattern.KIND:
+                visit((Tree.VariablePattern) that);
+                break;
+            case Tree.TuplePattern.KIND:
+                visit((Tree.TuplePattern) that);
+                break;
+            case Tree.KeyValuePattern.KIND:
+                visit((Tree.KeyValuePattern) that);
+                break;
+            case Tree.Destructure.KIND:
+                visit((Tree.Destructure) that);
+                break;
+            case Tree.ControlStatement.KIND:
+                visit((Tree.ControlStatement) that);
+                break;
+            case Tree.ControlClause.KIND:
+                visit((Tree.ControlClause) that);
+                break;
+            case Tree.DynamicStatement.KIND:
+                visit((Tree.DynamicStatement) that);
+                break;
+            case Tree.DynamicClause.KIND:
+                visit((Tree.DynamicClause) that);
+                break;
+            case Tree.LetExpression.KIND:
+                visit((Tree.LetExpression) that);
+                break;
+            case Tree.LetClause.KIND:
+                visit((Tree.LetClause) that);
+                break;
+            case Tree.IfStatement.KIND:
+                visit((Tree.IfStatement) that);
+                break;
+            case Tree.IfClause.KIND:
+                visit((Tree.IfClause) that);
+                break;
+            case Tree.ElseClause.KIND:
+                visit((Tree.ElseClause) that);
+                break;
+            case Tree.SwitchStatement.KIND:
+                visit((Tree.SwitchStatement) that);
+                break;
+            case Tree.SwitchClause.KIND:
+                visit((Tree.SwitchClause) that);
+                break;
+            case Tree.Switched.KIND:
+                visit((Tree.Switched) that);
+                break;
+            case Tree.SwitchCaseList.KIND:
+                visit((Tree.SwitchCaseList) that);
+                break;
+            case Tree.CaseClause.KIND:
+                visit((Tree.CaseClause) that);
+                break;
+            case Tree.CaseItem.KIND:
+                visit((Tree.CaseItem) that);
+                break;
+            case Tree.MatchCase.KIND:
+                visit((Tree.MatchCase) that);
+                break;
+            case Tree.IsCase.KIND:
+                visit((Tree.IsCase) that);
+                break;
+            case Tree.SatisfiesCase.KIND:
+                visit((Tree.SatisfiesCase) that);
+                break;
+            case Tree.TryCatchStatement.KIND:
+                visit((Tree.TryCatchStatement) that);
+                break;
+            case Tree.TryClause.KIND:
+                visit((Tree.TryClause) that);
+                break;
+            case Tree.CatchClause.KIND:
+                visit((Tree.CatchClause) that);
+                break;
+            case Tree.FinallyClause.KIND:
+                visit((Tree.FinallyClause) that);
+                break;
+            case Tree.ResourceList.KIND:
+                visit((Tree.ResourceList) that);
+                break;
+            case Tree.Resource.KIND:
+                visit((Tree.Resource) that);
+                break;
+            case Tree.CatchVariable.KIND:
+                visit((Tree.CatchVariable) that);
+                break;
+            case Tree.ForStatement.KIND:
+                visit((Tree.ForStatement) that);
+                break;
+            case Tree.ForClause.KIND:
+                visit((Tree.ForClause) that);
+                break;
+            case Tree.ForIterator.KIND:
+                visit((Tree.ForIterator) that);
+                break;
+            case Tree.ValueIterator.KIND:
+                visit((Tree.ValueIterator) that);
+                break;
+            case Tree.PatternIterator.KIND:
+                visit((Tree.PatternIterator) that);
+                break;
+            case Tree.WhileStatement.KIND:
+                visit((Tree.WhileStatement) that);
+                break;
+            case Tree.WhileClause.KIND:
+                visit((Tree.WhileClause) that);
+                break;
+            case Tree.ConditionList.KIND:
+                visit((Tree.ConditionList) that);
+                break;
+            case Tree.BooleanCondition.KIND:
+                visit((Tree.BooleanCondition) that);
+                break;
+            case Tree.ExistsCondition.KIND:
+                visit((Tree.ExistsCondition) that);
+                break;
+            case Tree.NonemptyCondition.KIND:
+                visit((Tree.NonemptyCondition) that);
+                break;
+            case Tree.IsCondition.KIND:
+                visit((Tree.IsCondition) that);
+                break;
+            case Tree.SatisfiesCondition.KIND:
+                visit((Tree.SatisfiesCondition) that);
+                break;
+            case Tree.Variable.KIND:
+                visit((Tree.Variable) that);
+                break;
+            case Tree.SumOp.KIND:
+                visit((Tree.SumOp) that);
+                break;
+            case Tree.DifferenceOp.KIND:
+                visit((Tree.DifferenceOp) that);
+                break;
+            case Tree.ProductOp.KIND:
+                visit((Tree.ProductOp) that);
+                break;
+            case Tree.QuotientOp.KIND:
+                visit((Tree.QuotientOp) that);
+                break;
+            case Tree.PowerOp.KIND:
+                visit((Tree.PowerOp) that);
+                break;
+            case Tree.RemainderOp.KIND:
+                visit((Tree.RemainderOp) that);
+                break;
+            case Tree.AssignOp.KIND:
+                visit((Tree.AssignOp) that);
+                break;
+            case Tree.AddAssignOp.KIND:
+                visit((Tree.AddAssignOp) that);
+                break;
+            case Tree.SubtractAssignOp.KIND:
+                visit((Tree.SubtractAssignOp) that);
+                break;
+            case Tree.MultiplyAssignOp.KIND:
+                visit((Tree.MultiplyAssignOp) that);
+                break;
+            case Tree.DivideAssignOp.KIND:
+                visit((Tree.DivideAssignOp) that);
+                break;
+            case Tree.RemainderAssignOp.KIND:
+                visit((Tree.RemainderAssignOp) that);
+                break;
+            case Tree.IntersectAssignOp.KIND:
+                visit((Tree.IntersectAssignOp) that);
+                break;
+            case Tree.UnionAssignOp.KIND:
+                visit((Tree.UnionAssignOp) that);
+                break;
+            case Tree.ComplementAssignOp.KIND:
+                visit((Tree.ComplementAssignOp) that);
+                break;
+            case Tree.AndAssignOp.KIND:
+                visit((Tree.AndAssignOp) that);
+                break;
+            case Tree.OrAssignOp.KIND:
+                visit((Tree.OrAssignOp) that);
+                break;
+            case Tree.AndOp.KIND:
+                visit((Tree.AndOp) that);
+                break;
+            case Tree.OrOp.KIND:
+                visit((Tree.OrOp) that);
+                break;
+            case Tree.IntersectionOp.KIND:
+                visit((Tree.IntersectionOp) that);
+                break;
+            case Tree.UnionOp.KIND:
+                visit((Tree.UnionOp) that);
+                break;
+            case Tree.ComplementOp.KIND:
+                visit((Tree.ComplementOp) that);
+                break;
+            case Tree.EqualOp.KIND:
+                visit((Tree.EqualOp) that);
+                break;
+            case Tree.NotEqualOp.KIND:
+                visit((Tree.NotEqualOp) that);
+                break;
+            case Tree.LargerOp.KIND:
+                visit((Tree.LargerOp) that);
+                break;
+            case Tree.SmallerOp.KIND:
+                visit((Tree.SmallerOp) that);
+                break;
+            case Tree.LargeAsOp.KIND:
+                visit((Tree.LargeAsOp) that);
+                break;
+            case Tree.SmallAsOp.KIND:
+                visit((Tree.SmallAsOp) that);
+                break;
+            case Tree.ScaleOp.KIND:
+                visit((Tree.ScaleOp) that);
+                break;
+            case Tree.OpenBound.KIND:
+                visit((Tree.OpenBound) that);
+                break;
+            case Tree.ClosedBound.KIND:
+                visit((Tree.ClosedBound) that);
+                break;
+            case Tree.WithinOp.KIND:
+                visit((Tree.WithinOp) that);
+                break;
+            case Tree.DefaultOp.KIND:
+                visit((Tree.DefaultOp) that);
+                break;
+            case Tree.ThenOp.KIND:
+                visit((Tree.ThenOp) that);
+                break;
+            case Tree.IdenticalOp.KIND:
+                visit((Tree.IdenticalOp) that);
+                break;
+            case Tree.EntryOp.KIND:
+                visit((Tree.EntryOp) that);
+                break;
+            case Tree.RangeOp.KIND:
+                visit((Tree.RangeOp) that);
+                break;
+            case Tree.SegmentOp.KIND:
+                visit((Tree.SegmentOp) that);
+                break;
+            case Tree.CompareOp.KIND:
+                visit((Tree.CompareOp) that);
+                break;
+            case Tree.InOp.KIND:
+                visit((Tree.InOp) that);
+                break;
+            case Tree.NotOp.KIND:
+                visit((Tree.NotOp) that);
+                break;
+            case Tree.Exists.KIND:
+                visit((Tree.Exists) that);
+                break;
+            case Tree.Nonempty.KIND:
+                visit((Tree.Nonempty) that);
+                break;
+            case Tree.NegativeOp.KIND:
+                visit((Tree.NegativeOp) that);
+                break;
+            case Tree.PositiveOp.KIND:
+                visit((Tree.PositiveOp) that);
+                break;
+            case Tree.IsOp.KIND:
+                visit((Tree.IsOp) that);
+                break;
+            case Tree.Satisfies.KIND:
+                visit((Tree.Satisfies) that);
+                break;
+            case Tree.Extends.KIND:
+                visit((Tree.Extends) that);
+                break;
+            case Tree.OfOp.KIND:
+                visit((Tree.OfOp) that);
+                break;
+            case Tree.IncrementOp.KIND:
+                visit((Tree.IncrementOp) that);
+                break;
+            case Tree.DecrementOp.KIND:
+                visit((Tree.DecrementOp) that);
+                break;
+            case Tree.PostfixIncrementOp.KIND:
+                visit((Tree.PostfixIncrementOp) that);
+                break;
+            case Tree.PostfixDecrementOp.KIND:
+                visit((Tree.PostfixDecrementOp) that);
+                break;
+            case Tree.ExpressionList.KIND:
+                visit((Tree.ExpressionList) that);
+                break;
+            case Tree.Expression.KIND:
+                visit((Tree.Expression) that);
+                break;
+            case Tree.InvocationExpression.KIND:
+                visit((Tree.InvocationExpression) that);
+                break;
+            case Tree.ParameterizedExpression.KIND:
+                visit((Tree.ParameterizedExpression) that);
+                break;
+            case Tree.ExtendedTypeExpression.KIND:
+                visit((Tree.ExtendedTypeExpression) that);
+                break;
+            case Tree.BaseMemberExpression.KIND:
+                visit((Tree.BaseMemberExpression) that);
+                break;
+            case Tree.BaseTypeExpression.KIND:
+                visit((Tree.BaseTypeExpression) that);
+                break;
+            case Tree.QualifiedMemberExpression.KIND:
+                visit((Tree.QualifiedMemberExpression) that);
+                break;
+            case Tree.QualifiedTypeExpression.KIND:
+                visit((Tree.QualifiedTypeExpression) that);
+                break;
+            case Tree.MemberOp.KIND:
+                visit((Tree.MemberOp) that);
+                break;
+            case Tree.SafeMemberOp.KIND:
+                visit((Tree.SafeMemberOp) that);
+                break;
+            case Tree.SpreadOp.KIND:
+                visit((Tree.SpreadOp) that);
+                break;
+            case Tree.IndexExpression.KIND:
+                visit((Tree.IndexExpression) that);
+                break;
+            case Tree.Element.KIND:
+                visit((Tree.Element) that);
+                break;
+            case Tree.ElementRange.KIND:
+                visit((Tree.ElementRange) that);
+                break;
+            case Tree.Outer.KIND:
+                visit((Tree.Outer) that);
+                break;
+            case Tree.Package.KIND:
+                visit((Tree.Package) that);
+                break;
+            case Tree.NamedArgumentList.KIND:
+                visit((Tree.NamedArgumentList) that);
+                break;
+            case Tree.SequencedArgument.KIND:
+                visit((Tree.SequencedArgument) that);
+                break;
+            case Tree.PositionalArgumentList.KIND:
+                visit((Tree.PositionalArgumentList) that);
+                break;
+            case Tree.ListedArgument.KIND:
+                visit((Tree.ListedArgument) that);
+                break;
+            case Tree.SpreadArgument.KIND:
+                visit((Tree.SpreadArgument) that);
+                break;
+            case Tree.FunctionArgument.KIND:
+                visit((Tree.FunctionArgument) that);
+                break;
+            case Tree.ObjectExpression.KIND:
+                visit((Tree.ObjectExpression) that);
+                break;
+            case Tree.IfExpression.KIND:
+                visit((Tree.IfExpression) that);
+                break;
+            case Tree.SwitchExpression.KIND:
+                visit((Tree.SwitchExpression) that);
+                break;
+            case Tree.SpecifiedArgument.KIND:
+                visit((Tree.SpecifiedArgument) that);
+                break;
+            case Tree.MethodArgument.KIND:
+                visit((Tree.MethodArgument) that);
+                break;
+            case Tree.AttributeArgument.KIND:
+                visit((Tree.AttributeArgument) that);
+                break;
+            case Tree.ObjectArgument.KIND:
+                visit((Tree.ObjectArgument) that);
+                break;
+            case Tree.SpecifierExpression.KIND:
+                visit((Tree.SpecifierExpression) that);
+                break;
+            case Tree.LazySpecifierExpression.KIND:
+                visit((Tree.LazySpecifierExpression) that);
+                break;
+            case Tree.InitializerExpression.KIND:
+                visit((Tree.InitializerExpression) that);
+                break;
+            case Tree.NaturalLiteral.KIND:
+                visit((Tree.NaturalLiteral) that);
+                break;
+            case Tree.FloatLiteral.KIND:
+                visit((Tree.FloatLiteral) that);
+                break;
+            case Tree.CharLiteral.KIND:
+                visit((Tree.CharLiteral) that);
+                break;
+            case Tree.StringLiteral.KIND:
+                visit((Tree.StringLiteral) that);
+                break;
+            case Tree.QuotedLiteral.KIND:
+                visit((Tree.QuotedLiteral) that);
+                break;
+            case Tree.DocLink.KIND:
+                visit((Tree.DocLink) that);
+                break;
+            case Tree.This.KIND:
+                visit((Tree.This) that);
+                break;
+            case Tree.Super.KIND:
+                visit((Tree.Super) that);
+                break;
+            case Tree.SequenceEnumeration.KIND:
+                visit((Tree.SequenceEnumeration) that);
+                break;
+            case Tree.Tuple.KIND:
+                visit((Tree.Tuple) that);
+                break;
+            case Tree.Dynamic.KIND:
+                visit((Tree.Dynamic) that);
+                break;
+            case Tree.StringTemplate.KIND:
+                visit((Tree.StringTemplate) that);
+                break;
+            case Tree.Annotation.KIND:
+                visit((Tree.Annotation) that);
+                break;
+            case Tree.AnonymousAnnotation.KIND:
+                visit((Tree.AnonymousAnnotation) that);
+                break;
+            case Tree.AnnotationList.KIND:
+                visit((Tree.AnnotationList) that);
+                break;
+            case Tree.Identifier.KIND:
+                visit((Tree.Identifier) that);
+                break;
+            case Tree.Comprehension.KIND:
+                visit((Tree.Comprehension) that);
+                break;
+            case Tree.ExpressionComprehensionClause.KIND:
+                visit((Tree.ExpressionComprehensionClause) that);
+                break;
+            case Tree.ForComprehensionClause.KIND:
+                visit((Tree.ForComprehensionClause) that);
+                break;
+            case Tree.IfComprehensionClause.KIND:
+                visit((Tree.IfComprehensionClause) that);
+                break;
+            default:
+                that.visit(this);
+            }
+        }
+        catch (Exception e) {
+            handleException(e, that);
+        }
+    }
+
+    @Override
+    public void visitAny(Node that) {
+        int start = children.size();
+        that.collectChildren(children);
+        for (int i=start, end=children.size(); i<end; i++) {
+            dispatch(children.get(i));
+        }
+        children.subList(start, children.size()).clear();
+    }
+
+}
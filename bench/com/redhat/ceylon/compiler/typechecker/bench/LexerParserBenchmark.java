@@ -0,0 +1,63 @@
+package com.redhat.ceylon.compiler.typechecker.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer;
+import com.redhat.ceylon.compiler.typechecker.parser.CeylonParser;
+
+/**
+ * Lexes, or lexes and parses, every source file of the
+ * corpus. The files are read and decoded beforehand, so
+ * that IO isn't measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5)
+@Measurement(iterations=10)
+@Fork(1)
+public class LexerParserBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Sources extends CorpusState {}
+
+    @Benchmark
+    public int lex(Sources sources) {
+        int count = 0;
+        for (char[] source: sources.getSources()) {
+            CeylonLexer lexer = new CeylonLexer(
+                    new ANTLRStringStream(source, source.length));
+            while (lexer.nextToken().getType()!=Token.EOF) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public void parse(Sources sources, Blackhole blackhole)
+            throws RecognitionException {
+        for (char[] source: sources.getSources()) {
+            CeylonLexer lexer = new CeylonLexer(
+                    new ANTLRStringStream(source, source.length));
+            CeylonParser parser = new CeylonParser(
+                    new CommonTokenStream(lexer));
+            blackhole.consume(parser.compilationUnit());
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.redhat.ceylon.compiler.typechecker.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.redhat.ceylon.compiler.typechecker.TypeChecker;
+import com.redhat.ceylon.compiler.typechecker.context.Phase;
+
+/**
+ * Runs one {@link Phase} for every unit of the corpus.
+ * Before each invocation, the corpus is parsed again by
+ * a new type checker and taken through the preceding
+ * phases, which isn't measured. The {@code typeCheck}
+ * benchmark measures the parsing and all the phases
+ * together.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=10)
+@Measurement(iterations=20)
+@Fork(1)
+public class PhaseBenchmark {
+
+    @State(Scope.Thread)
+    public static class Units extends CorpusState {
+
+        @Param({"VALIDATE_TREE", "SCAN_DECLARATIONS",
+                "SCAN_TYPE_DECLARATIONS",
+                "VALIDATE_REFINEMENT", "ANALYSE_TYPES",
+                "ANALYSE_FLOW", "ANALYSE_USAGE"})
+        public Phase phase;
+
+        TypeChecker typeChecker;
+
+        @Setup(Level.Invocation)
+        public void prepareUnits() {
+            typeChecker = typeCheckBefore(phase);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Sources extends CorpusState {}
+
+    @Benchmark
+    public TypeChecker phase(Units units) {
+        CorpusState.run(units.typeChecker, units.phase);
+        return units.typeChecker;
+    }
+
+    /**
+     * Parse the corpus and run every phase, as
+     * {@link TypeChecker#process()} does, but without
+     * collecting statistics and assertions.
+     */
+    @Benchmark
+    public TypeChecker typeCheck(Sources sources) {
+        return sources.typeCheckBefore(null);
+    }
+
+}
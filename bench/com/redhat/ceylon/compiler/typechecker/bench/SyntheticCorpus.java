@@ -0,0 +1,143 @@
+package com.redhat.ceylon.compiler.typechecker.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+
+/**
+ * Writes synthetic Ceylon source trees of a given size,
+ * so that the benchmarks can measure how the type
+ * checker scales. The generated code is always the same
+ * for the same size.
+ */
+public class SyntheticCorpus {
+
+    private static final String PACKAGE = "synthetic";
+
+    /**
+     * Write a source directory of the given number of
+     * units. Each unit declares an interface, an abstract
+     * class, a class, and a function, with control flow,
+     * refinement, and references to the previous unit.
+     *
+     * @return the new source directory
+     */
+    public static File createUnits(int units)
+            throws IOException {
+        File dir = createSourceDirectory();
+        for (int i=0; i<units; i++) {
+            write(new File(dir, PACKAGE + "/unit" + i + ".ceylon"),
+                    unit(i));
+        }
+        return dir;
+    }
+
+    /**
+     * Write a source directory containing a single unit
+     * with the given number of toplevel declarations,
+     * each referring to the previous one.
+     *
+     * @return the new source directory
+     */
+    public static File createDeclarations(int declarations)
+            throws IOException {
+        File dir = createSourceDirectory();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Integer f0() => 0;\n");
+        for (int i=1; i<declarations; i++) {
+            sb.append("Integer f").append(i)
+              .append("() => f").append(i-1)
+              .append("() + 1;\n");
+        }
+        sb.append("shared Integer last => f")
+          .append(declarations-1).append("();\n");
+        write(new File(dir, PACKAGE + "/declarations.ceylon"),
+                sb.toString());
+        return dir;
+    }
+
+    /**
+     * Delete a directory written by this class.
+     */
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children!=null) {
+            for (File child: children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static File createSourceDirectory()
+            throws IOException {
+        File dir = Files.createTempDirectory("ceylon-bench")
+                .toFile();
+        new File(dir, PACKAGE).mkdirs();
+        return dir;
+    }
+
+    private static String unit(int i) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("shared interface Shape").append(i).append(" {\n")
+          .append("    shared formal Float area;\n")
+          .append("    shared default String describe() => \"shape of area ``area``\";\n")
+          .append("}\n\n");
+        sb.append("shared abstract class Base").append(i)
+          .append("(shared String name) satisfies Shape").append(i).append(" {\n")
+          .append("    shared actual default Float area => 0.0;\n")
+          .append("    shared actual String string => name;\n")
+          .append("}\n\n");
+        sb.append("shared class Impl").append(i)
+          .append("(String name, Integer size) extends Base").append(i).append("(name) {\n")
+          .append("    variable Integer misses = 0;\n")
+          .append("    shared actual Float area => size.float * size.float;\n")
+          .append("    shared Integer sum({Integer*} values) {\n")
+          .append("        variable Integer result = 0;\n")
+          .append("        for (v in values) {\n")
+          .append("            if (v > size) {\n")
+          .append("                result += v;\n")
+          .append("            }\n")
+          .append("            else {\n")
+          .append("                misses++;\n")
+          .append("            }\n")
+          .append("        }\n")
+          .append("        return result;\n")
+          .append("    }\n")
+          .append("    shared String classify(Object o) {\n")
+          .append("        switch (o)\n")
+          .append("        case (is String) { return o; }\n")
+          .append("        case (is Integer) { return o.string; }\n")
+          .append("        else { return describe(); }\n")
+          .append("    }\n")
+          .append("}\n\n");
+        sb.append("shared Integer compute").append(i).append("(Integer x) {\n")
+          .append("    value impl = Impl").append(i).append("(\"impl").append(i).append("\", x);\n")
+          .append("    assert (x >= 0);\n")
+          .append("    value values = [ for (n in 0..x) n * 2 ];\n");
+        if (i>0) {
+            sb.append("    return impl.sum(values) + compute").append(i-1).append("(x);\n");
+        }
+        else {
+            sb.append("    return impl.sum(values);\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static void write(File file, String content)
+            throws IOException {
+        Writer writer = new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+}
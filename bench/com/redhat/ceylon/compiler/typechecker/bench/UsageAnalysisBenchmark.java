@@ -0,0 +1,83 @@
+package com.redhat.ceylon.compiler.typechecker.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.redhat.ceylon.compiler.typechecker.TypeChecker;
+import com.redhat.ceylon.compiler.typechecker.TypeCheckerBuilder;
+import com.redhat.ceylon.compiler.typechecker.context.Phase;
+
+/**
+ * Runs {@link Phase#ANALYSE_USAGE} over a single
+ * synthetic unit with the given number of declarations.
+ * Usage analysis should take time linear in the size of
+ * the unit, so the time per declaration should stay the
+ * same as the unit grows.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=10)
+@Measurement(iterations=20)
+@Fork(1)
+public class UsageAnalysisBenchmark {
+
+    @State(Scope.Thread)
+    public static class Declarations {
+
+        @Param({"5000", "20000", "50000"})
+        public int declarations;
+
+        private File directory;
+        private TypeCheckerBuilder builder;
+
+        TypeChecker typeChecker;
+
+        @Setup(Level.Trial)
+        public void prepareUnit() throws IOException {
+            directory = SyntheticCorpus.createDeclarations(declarations);
+            builder = new TypeCheckerBuilder()
+                    .verbose(false)
+                    .statistics(false)
+                    .addSrcDirectory(directory);
+        }
+
+        @TearDown(Level.Trial)
+        public void disposeUnit() {
+            SyntheticCorpus.delete(directory);
+        }
+
+        @Setup(Level.Invocation)
+        public void prepareUsageAnalysis() {
+            typeChecker = builder.getTypeChecker();
+            typeChecker.processModules();
+            for (Phase phase: Phase.values()) {
+                if (phase==Phase.ANALYSE_USAGE) {
+                    break;
+                }
+                CorpusState.run(typeChecker, phase);
+            }
+        }
+    }
+
+    @Benchmark
+    public TypeChecker analyseUsage(Declarations state) {
+        CorpusState.run(state.typeChecker, Phase.ANALYSE_USAGE);
+        return state.typeChecker;
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.redhat.ceylon.compiler.typechecker.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.redhat.ceylon.compiler.typechecker.TypeChecker;
+import com.redhat.ceylon.compiler.typechecker.analyzer.AliasVisitor;
+import com.redhat.ceylon.compiler.typechecker.analyzer.ExpressionVisitor;
+import com.redhat.ceylon.compiler.typechecker.analyzer.InheritanceVisitor;
+import com.redhat.ceylon.compiler.typechecker.analyzer.RefinementVisitor;
+import com.redhat.ceylon.compiler.typechecker.analyzer.SupertypeVisitor;
+import com.redhat.ceylon.compiler.typechecker.analyzer.TypeHierarchyVisitor;
+import com.redhat.ceylon.compiler.typechecker.context.Phase;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
+import com.redhat.ceylon.model.typechecker.context.TypeCache;
+import com.redhat.ceylon.model.typechecker.model.Type;
+
+/**
+ * Runs one of the most expensive visitors over every
+ * unit of the corpus, in the same state, and with the
+ * same settings, as in the phase which runs it. Before
+ * each invocation, the corpus is parsed again by a new
+ * type checker and taken up to that visitor, which isn't
+ * measured.
+ *
+ * @see PhasedUnit#validateRefinement()
+ * @see PhasedUnit#analyseTypes()
+ * @see PhasedUnit#analyseFlow()
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=10)
+@Measurement(iterations=20)
+@Fork(1)
+public class VisitorBenchmark {
+
+    @State(Scope.Thread)
+    public static class BeforeRefinement extends CorpusState {
+
+        TypeChecker typeChecker;
+
+        @Setup(Level.Invocation)
+        public void prepareUnits() {
+            typeChecker = typeCheckBefore(Phase.VALIDATE_REFINEMENT);
+            Boolean enabled = TypeCache.setEnabled(false);
+            try {
+                for (PhasedUnit pu: units(typeChecker)) {
+                    Type.resetDepth(0);
+                    pu.getCompilationUnit().visit(new AliasVisitor());
+                    pu.getCompilationUnit().visit(new SupertypeVisitor(true));
+                    pu.getCompilationUnit().visit(new InheritanceVisitor());
+                }
+            }
+            finally {
+                TypeCache.setEnabled(enabled);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BeforeTypeAnalysis extends CorpusState {
+
+        TypeChecker typeChecker;
+
+        @Setup(Level.Invocation)
+        public void prepareUnits() {
+            typeChecker = typeCheckBefore(Phase.ANALYSE_TYPES);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BeforeFlowAnalysis extends CorpusState {
+
+        TypeChecker typeChecker;
+
+        @Setup(Level.Invocation)
+        public void prepareUnits() {
+            typeChecker = typeCheckBefore(Phase.ANALYSE_FLOW);
+        }
+    }
+
+    @Benchmark
+    public TypeChecker refinementVisitor(BeforeRefinement state) {
+        Boolean enabled = TypeCache.setEnabled(false);
+        try {
+            for (PhasedUnit pu: CorpusState.units(state.typeChecker)) {
+                Type.resetDepth(0);
+                pu.getCompilationUnit().visit(new RefinementVisitor());
+            }
+        }
+        finally {
+            TypeCache.setEnabled(enabled);
+        }
+        return state.typeChecker;
+    }
+
+    @Benchmark
+    public TypeChecker expressionVisitor(BeforeTypeAnalysis state) {
+        for (PhasedUnit pu: CorpusState.units(state.typeChecker)) {
+            Type.resetDepth(-100);
+            pu.getCompilationUnit().visit(new ExpressionVisitor());
+        }
+        return state.typeChecker;
+    }
+
+    @Benchmark
+    public TypeChecker typeHierarchyVisitor(BeforeFlowAnalysis state) {
+        TypeHierarchyVisitor.Cache cache = 
+                state.typeChecker.getContext()
+                    .getTypeHierarchyCache();
+        for (PhasedUnit pu: CorpusState.units(state.typeChecker)) {
+            pu.getCompilationUnit().visit(new TypeHierarchyVisitor(cache));
+        }
+        return state.typeChecker;
+    }
+
+}
@@ -1,20 +1,42 @@
 package com.redhat.ceylon.compiler.typechecker;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.redhat.ceylon.cmr.api.RepositoryManager;
 import com.redhat.ceylon.common.Versions;
 import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleValidator;
 import com.redhat.ceylon.compiler.typechecker.context.Context;
+import com.redhat.ceylon.compiler.typechecker.context.DiagnosticListener;
+import com.redhat.ceylon.compiler.typechecker.context.DiagnosticScope;
+import com.redhat.ceylon.compiler.typechecker.context.Phase;
+import com.redhat.ceylon.compiler.typechecker.context.PhaseListener;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnits;
+import com.redhat.ceylon.compiler.typechecker.context.TypecheckerUnit;
 import com.redhat.ceylon.compiler.typechecker.io.VFS;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
+import com.redhat.ceylon.compiler.typechecker.io.impl.Helper;
 import com.redhat.ceylon.compiler.typechecker.tree.Message;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
 import com.redhat.ceylon.compiler.typechecker.util.AssertionVisitor;
 import com.redhat.ceylon.compiler.typechecker.util.ModuleManagerFactory;
 import com.redhat.ceylon.compiler.typechecker.util.StatisticsVisitor;
+import com.redhat.ceylon.model.typechecker.model.ImportList;
 import com.redhat.ceylon.model.typechecker.model.Module;
+import com.redhat.ceylon.model.typechecker.model.Package;
+import com.redhat.ceylon.model.typechecker.model.Scope;
+import com.redhat.ceylon.model.typechecker.model.Unit;
+import com.redhat.ceylon.model.typechecker.util.ModuleManager;
 
 /**
  * Executes type checking upon construction and retrieve a 
@@ -31,10 +53,15 @@ public class TypeChecker {
     private final boolean statistics;
     private final Context context;
     private final PhasedUnits phasedUnits;
+    private final List<VirtualFile> srcDirectories;
     private List<PhasedUnits> phasedUnitsOfDependencies;
     private final boolean verifyDependencies;
     private final AssertionVisitor assertionVisitor;
     private final StatisticsVisitor statsVisitor;
+    private final ForkJoinPool forkJoinPool;
+    private final ErrorCounter errorCounter;
+    private final boolean skipFlowAnalysisOnSyntaxErrors;
+    private final boolean retainModelOnly;
 
     TypeChecker(VFS vfs, 
             List<VirtualFile> srcDirectories, 
@@ -45,20 +72,49 @@ public class TypeChecker {
             boolean verbose, boolean statistics,
             List<String> moduleFilters, 
             List<VirtualFile> srcFiles, 
-            String encoding) {
+            String encoding,
+            ForkJoinPool forkJoinPool,
+            File parseCacheDirectory,
+            PhaseListener phaseListener,
+            DiagnosticListener diagnosticListener,
+            int errorLimit,
+            boolean skipFlowAnalysisOnSyntaxErrors,
+            boolean retainTokens,
+            boolean retainModelOnly,
+            boolean pruneFlowAnalysis) {
         long start = System.nanoTime();
         this.verbose = verbose;
         this.statistics = statistics;
         this.context = new Context(repositoryManager, vfs);
+        context.setParseCacheDirectory(parseCacheDirectory);
+        context.setPhaseListener(phaseListener);
+        context.setRetainTokens(retainTokens);
+        context.setPruneFlowAnalysis(pruneFlowAnalysis);
+        if (errorLimit>0) {
+            errorCounter = 
+                    new ErrorCounter(errorLimit, 
+                            diagnosticListener);
+            context.setDiagnosticListener(errorCounter);
+        }
+        else {
+            errorCounter = null;
+            context.setDiagnosticListener(diagnosticListener);
+        }
+        this.skipFlowAnalysisOnSyntaxErrors = 
+                skipFlowAnalysisOnSyntaxErrors;
+        this.retainModelOnly = retainModelOnly;
         this.phasedUnits = 
                 new PhasedUnits(context, 
                         moduleManagerFactory);
+        this.srcDirectories = srcDirectories;
         this.verifyDependencies = verifyDependencies;
         this.assertionVisitor = assertionVisitor;
+        this.forkJoinPool = forkJoinPool;
         statsVisitor = new StatisticsVisitor();
         phasedUnits.setSourceFiles(srcFiles);
         phasedUnits.setModuleFilters(moduleFilters);
         phasedUnits.setEncoding(encoding);
+        phasedUnits.setForkJoinPool(forkJoinPool);
         phasedUnits.parseUnits(srcDirectories);
         long time = System.nanoTime()-start;
         if(statistics)
@@ -138,6 +194,9 @@ public class TypeChecker {
             throws RuntimeException {
         long start = System.nanoTime();
         executePhases(phasedUnits, forceSilence);
+        if (retainModelOnly) {
+            releaseTrees();
+        }
         long time = System.nanoTime()-start;
         if(statistics)
         	System.out.println("Type checked in " + 
@@ -149,6 +208,70 @@ public class TypeChecker {
         List<PhasedUnit> listOfUnits = 
                 phasedUnits.getPhasedUnits();
 
+        processModules();
+
+        executePhases(listOfUnits);
+
+        if (!forceSilence) {
+            for (PhasedUnit pu: listOfUnits) {
+                if (verbose) {
+                    pu.display();
+                }
+                pu.generateStatistics(statsVisitor);
+                pu.runAssertions(assertionVisitor);
+            }
+            if (verbose||statistics) {
+            	statsVisitor.print();
+            }
+            assertionVisitor.print(verbose);
+        }
+        
+    }
+
+    /**
+     * Discard the trees and tokens of the source units, 
+     * keeping only their model. Errors must be collected 
+     * first, from {@link #getMessages()}, or by a 
+     * {@link DiagnosticListener}, since the messages,
+     * which refer to the nodes of the trees, are then
+     * forgotten. The trees of units checked again by
+     * {@link #processChanges} are kept until this is 
+     * called again.
+     * 
+     * @see PhasedUnit#releaseTree()
+     */
+    public void releaseTrees() {
+        for (PhasedUnit pu: phasedUnits.getPhasedUnits()) {
+            pu.releaseTree();
+        }
+        assertionVisitor.getFoundErrors().clear();
+    }
+
+    /**
+     * Resolve the modules of the source units, and their
+     * dependencies. This is the first step of
+     * {@link #process()}, and is only needed by clients
+     * which then run the {@linkplain Phase phases}
+     * themselves. The errors found are reported to the
+     * {@link DiagnosticListener} with neither a unit nor
+     * a phase.
+     */
+    public void processModules() {
+        DiagnosticListener diagnosticListener = 
+                context.getDiagnosticListener();
+        DiagnosticScope scope = diagnosticListener==null ? null :
+                DiagnosticScope.enter(diagnosticListener, null, null);
+        try {
+            resolveModules();
+        }
+        finally {
+            if (scope!=null) {
+                scope.exit();
+            }
+        }
+    }
+
+    private void resolveModules() {
         phasedUnits.getModuleManager()
             .prepareForTypeChecking();
         phasedUnits.visitModules();
@@ -166,50 +289,324 @@ public class TypeChecker {
 
         ModuleValidator moduleValidator = 
                 new ModuleValidator(context, phasedUnits);
+        moduleValidator.setForkJoinPool(forkJoinPool);
         if (verifyDependencies) {
             moduleValidator.verifyModuleDependencyTree();
         }
         phasedUnitsOfDependencies = 
                 moduleValidator.getPhasedUnitsOfDependencies();
+    }
 
-        executePhases(listOfUnits);
-
-        if (!forceSilence) {
-            for (PhasedUnit pu: listOfUnits) {
-                if (verbose) {
-                    pu.display();
+    protected void executePhases(
+            List<PhasedUnit> listOfUnits) {
+        for (Phase phase: Phase.values()) {
+            if (isAborted()) {
+                break;
+            }
+            executePhase(listOfUnits, phase);
+        }
+    }
+    
+    /**
+     * Has type checking stopped early because the
+     * {@linkplain TypeCheckerBuilder#errorLimit(int) 
+     * error limit} was reached? If so, some phases have 
+     * not run for some units.
+     */
+    public boolean isAborted() {
+        return errorCounter!=null && 
+                errorCounter.isLimitReached();
+    }
+    
+    private void runPhase(PhasedUnit pu, Phase phase) {
+        if (isAborted()) {
+            return;
+        }
+        if (skipFlowAnalysisOnSyntaxErrors &&
+                (phase==Phase.ANALYSE_FLOW || 
+                 phase==Phase.ANALYSE_USAGE) &&
+                pu.hasSyntaxErrors()) {
+            return;
+        }
+        phase.run(pu);
+    }
+    
+    /**
+     * Run the given phase for every unit, one unit at a
+     * time, in the order of the units.
+     */
+    protected void executePhase(List<PhasedUnit> listOfUnits, 
+            Phase phase) {
+        for (PhasedUnit pu: listOfUnits) {
+            runPhase(pu, phase);
+        }
+    }
+    
+    /**
+     * Type check again after the given source files were
+     * changed, added, or removed, without reprocessing 
+     * the whole source tree. These units are parsed again
+     * and taken through every phase:
+     * <ul>
+     * <li>the changed files,
+     * <li>every unit in the package of a changed, added, or
+     *     removed file, or importing from that package, 
+     *     since a declaration which appears or disappears
+     *     may change what their names resolve to,
+     * <li>units with unresolved references, which might
+     *     now be resolved, and
+     * <li>every unit which depends on any of these, 
+     *     directly or indirectly.
+     * </ul>
+     * Other units are left untouched. The assertions are
+     * then run again for every unit which still has its
+     * tree, so that {@link #getErrors()}, 
+     * {@link #getWarnings()}, and {@link #getMessages()}
+     * reflect the changes, but leave out units whose trees
+     * were {@linkplain #releaseTrees() released}.
+     * 
+     * Must be called after {@link #process()}. Changes to
+     * module and package descriptors are not supported,
+     * and require a new type checker.
+     * 
+     * @param changedFiles the changed or added files
+     * @param removedFiles the removed files
+     * 
+     * @return the units which were type checked again, 
+     *         replacing the previous units for the same
+     *         files, which keep their place among the 
+     *         units, while added files come last
+     */
+    public List<PhasedUnit> processChanges(
+            Collection<? extends VirtualFile> changedFiles, 
+            Collection<? extends VirtualFile> removedFiles) {
+        Map<String,VirtualFile> changedPaths = 
+                new HashMap<String,VirtualFile>();
+        Set<Package> changedPackages = new HashSet<Package>();
+        List<VirtualFile> addedFiles = 
+                new ArrayList<VirtualFile>();
+        for (VirtualFile file: changedFiles) {
+            checkNotDescriptor(file);
+            changedPaths.put(file.getPath(), file);
+            PhasedUnit pu = phasedUnits.getPhasedUnit(file);
+            if (pu==null) {
+                addedFiles.add(file);
+                changedPackages.add(getPackage(file, 
+                        getSrcDirectory(file)));
+            }
+            else {
+                changedPackages.add(pu.getPackage());
+            }
+        }
+        Set<String> removedPaths = new HashSet<String>();
+        for (VirtualFile file: removedFiles) {
+            checkNotDescriptor(file);
+            removedPaths.add(file.getPath());
+            PhasedUnit pu = phasedUnits.getPhasedUnit(file);
+            if (pu!=null) {
+                changedPackages.add(pu.getPackage());
+            }
+        }
+        
+        //find the units which need to be checked again
+        LinkedList<String> queue = new LinkedList<String>();
+        queue.addAll(changedPaths.keySet());
+        queue.addAll(removedPaths);
+        for (PhasedUnit pu: phasedUnits.getPhasedUnits()) {
+            TypecheckerUnit unit = pu.getUnit();
+            if (pu.hasUnresolvedReferences() ||
+                    changedPackages.contains(pu.getPackage()) ||
+                    importsFrom(unit, changedPackages)) {
+                queue.add(pu.getUnitFile().getPath());
+            }
+        }
+        Set<String> invalidPaths = new HashSet<String>();
+        while (!queue.isEmpty()) {
+            String path = queue.removeFirst();
+            if (invalidPaths.add(path)) {
+                PhasedUnit pu = phasedUnits.getPhasedUnit(path);
+                if (pu!=null) {
+                    queue.addAll(pu.getUnit().getDependentsOf());
                 }
-                pu.generateStatistics(statsVisitor);
-                pu.runAssertions(assertionVisitor);
             }
-            if (verbose||statistics) {
-            	statsVisitor.print();
+        }
+        
+        //discard them, removing their declarations from
+        //the model, before parsing any of them again, but
+        //leave the units of files which still exist in 
+        //place, so that their new units take their place
+        List<PhasedUnit> invalidUnits = 
+                new ArrayList<PhasedUnit>();
+        for (PhasedUnit pu: phasedUnits.getPhasedUnits()) {
+            String path = pu.getUnitFile().getPath();
+            if (invalidPaths.contains(path)) {
+                if (removedPaths.contains(path)) {
+                    phasedUnits.removePhasedUnitForRelativePath(
+                            pu.getPathRelativeToSrcDir());
+                }
+                else {
+                    Unit unit = pu.getUnit();
+                    unit.getPackage().removeUnit(unit);
+                    invalidUnits.add(pu);
+                }
             }
-            assertionVisitor.print(verbose);
         }
+        //the error limit applies to the errors in the
+        //units checked again
+        if (errorCounter!=null) {
+            errorCounter.reset();
+        }
+        //the members of the remaining types, and of their
+        //supertypes, may have changed
+        context.getTypeHierarchyCache().clear();
+        
+        List<PhasedUnit> listOfUnits = 
+                new ArrayList<PhasedUnit>();
+        for (PhasedUnit pu: invalidUnits) {
+            VirtualFile file = 
+                    changedPaths.get(pu.getUnitFile().getPath());
+            listOfUnits.add(phasedUnits.parseUnit(
+                    file==null ? pu.getUnitFile() : file, 
+                    pu.getSrcDir(), pu.getPackage()));
+        }
+        for (VirtualFile file: addedFiles) {
+            VirtualFile srcDir = getSrcDirectory(file);
+            listOfUnits.add(phasedUnits.parseUnit(
+                    file, srcDir, getPackage(file, srcDir)));
+        }
+        
+        executePhases(listOfUnits);
         
+        assertionVisitor.reset();
+        for (PhasedUnit pu: phasedUnits.getPhasedUnits()) {
+            if (!pu.isTreeReleased()) {
+                pu.runAssertions(assertionVisitor);
+            }
+        }
+        return listOfUnits;
     }
-
-    protected void executePhases(
-            List<PhasedUnit> listOfUnits) {
-        for (PhasedUnit pu : listOfUnits) {
-            pu.validateTree();
-            pu.scanDeclarations();
+    
+    /**
+     * Does the given unit import from one of the given
+     * packages?
+     */
+    private static boolean importsFrom(Unit unit, 
+            Set<Package> packages) {
+        for (ImportList il: unit.getImportLists()) {
+            Scope importedScope = il.getImportedScope();
+            if (importedScope instanceof Package &&
+                    packages.contains(importedScope)) {
+                return true;
+            }
         }
-        for (PhasedUnit pu : listOfUnits) {
-            pu.scanTypeDeclarations();
+        return false;
+    }
+    
+    private static void checkNotDescriptor(VirtualFile file) {
+        String name = file.getName();
+        if (ModuleManager.MODULE_FILE.equals(name) ||
+            ModuleManager.PACKAGE_FILE.equals(name)) {
+            throw new IllegalArgumentException(
+                    "changes to module and package descriptors require a new type checker: " + 
+                    file.getPath());
         }
-        for (PhasedUnit pu: listOfUnits) {
-            pu.validateRefinement();
+    }
+    
+    private VirtualFile getSrcDirectory(VirtualFile file) {
+        String path = file.getPath();
+        for (VirtualFile srcDir: srcDirectories) {
+            String srcPath = srcDir.getPath();
+            if (path.startsWith(srcPath + "/") || 
+                path.startsWith(srcPath + "!/")) {
+                return srcDir;
+            }
         }
-        for (PhasedUnit pu : listOfUnits) {
-            pu.analyseTypes();
+        throw new IllegalArgumentException(
+                "source file does not belong to a source directory: " + 
+                path);
+    }
+    
+    /**
+     * The package of a new source file, in the module
+     * whose descriptor is in the nearest directory above
+     * it, within the same source directory, or in the
+     * default module if there is none.
+     */
+    private Package getPackage(VirtualFile file, VirtualFile srcDir) {
+        String relativePath = 
+                Helper.computeRelativePath(file, srcDir);
+        int loc = relativePath.lastIndexOf('/');
+        String directory = loc<0 ? "" : 
+            relativePath.substring(0, loc);
+        String packageName = directory.replace('/', '.');
+        Module module = null;
+        int moduleDirectoryLength = -1;
+        for (PhasedUnit pu: phasedUnits.getPhasedUnits()) {
+            if (ModuleManager.MODULE_FILE.equals(
+                        pu.getUnitFile().getName()) &&
+                    pu.getSrcDir().getPath()
+                        .equals(srcDir.getPath())) {
+                String moduleRelativePath = 
+                        pu.getPathRelativeToSrcDir();
+                int moduleLoc = 
+                        moduleRelativePath.lastIndexOf('/');
+                String moduleDirectory = moduleLoc<0 ? "" : 
+                    moduleRelativePath.substring(0, moduleLoc);
+                if ((directory.equals(moduleDirectory) ||
+                        directory.startsWith(moduleDirectory + "/")) &&
+                        moduleDirectory.length()>moduleDirectoryLength) {
+                    module = pu.getPackage().getModule();
+                    moduleDirectoryLength = 
+                            moduleDirectory.length();
+                }
+            }
         }
-        for (PhasedUnit pu: listOfUnits) {
-            pu.analyseFlow();
+        if (module==null) {
+            module = context.getModules().getDefaultModule();
         }
-        for (PhasedUnit pu: listOfUnits) {
-            pu.analyseUsage();
+        for (Package pkg: module.getPackages()) {
+            if (pkg.getNameAsString().equals(packageName)) {
+                return pkg;
+            }
+        }
+        throw new IllegalArgumentException(
+                "source file does not belong to a known package: " + 
+                file.getPath());
+    }
+    
+    /**
+     * Counts the errors found, passing every message on
+     * to the listener supplied by the client, if any.
+     */
+    private static final class ErrorCounter 
+            implements DiagnosticListener {
+        
+        private final int limit;
+        private final DiagnosticListener listener;
+        private final AtomicInteger errors = new AtomicInteger();
+        
+        ErrorCounter(int limit, DiagnosticListener listener) {
+            this.limit = limit;
+            this.listener = listener;
+        }
+        
+        @Override
+        public void messageAdded(PhasedUnit unit, Phase phase, 
+                Node node, Message message) {
+            if (!message.isWarning()) {
+                errors.incrementAndGet();
+            }
+            if (listener!=null) {
+                listener.messageAdded(unit, phase, node, message);
+            }
+        }
+        
+        boolean isLimitReached() {
+            return errors.get()>=limit;
+        }
+        
+        void reset() {
+            errors.set(0);
         }
     }
     
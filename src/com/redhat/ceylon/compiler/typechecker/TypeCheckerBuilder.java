@@ -3,10 +3,14 @@ package com.redhat.ceylon.compiler.typechecker;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import com.redhat.ceylon.cmr.api.RepositoryManager;
 import com.redhat.ceylon.cmr.ceylon.CeylonUtils;
 import com.redhat.ceylon.compiler.typechecker.analyzer.UnsupportedError;
+import com.redhat.ceylon.compiler.typechecker.context.DiagnosticListener;
+import com.redhat.ceylon.compiler.typechecker.context.PhaseListener;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
 import com.redhat.ceylon.compiler.typechecker.io.VFS;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
 import com.redhat.ceylon.compiler.typechecker.io.cmr.impl.LeakingLogger;
@@ -43,6 +47,15 @@ public class TypeCheckerBuilder {
     private ModuleManagerFactory moduleManagerFactory;
     private RepositoryManager repositoryManager;
     private List<String> moduleFilters = new ArrayList<String>();
+    private ForkJoinPool forkJoinPool;
+    private File parseCacheDirectory;
+    private PhaseListener phaseListener;
+    private DiagnosticListener diagnosticListener;
+    private int errorLimit = 0;
+    private boolean skipFlowAnalysisOnSyntaxErrors = false;
+    private boolean retainTokens = true;
+    private boolean retainModelOnly = false;
+    private boolean pruneFlowAnalysis = false;
 
     public TypeCheckerBuilder() {}
 
@@ -139,6 +152,126 @@ public class TypeCheckerBuilder {
         return vfs;
     }
 
+    /**
+     * The pool for parsing and dependency lookup: source 
+     * files are parsed concurrently, using the given pool,
+     * and the artifacts of independent dependencies are
+     * also looked up, and their sources parsed, 
+     * concurrently, so the repository manager must 
+     * support concurrent lookups. The type checking 
+     * phases never use the pool, and run for one unit at
+     * a time, since they change the shared model. By 
+     * default, everything happens on the calling thread.
+     * 
+     * The pool belongs to the caller, who must shut it
+     * down once the type checker is no longer used, 
+     * including for {@link TypeChecker#processChanges}.
+     *
+     * @param forkJoinPool the pool, or null to parse and
+     *        look up dependencies on the calling thread
+     */
+    public TypeCheckerBuilder forkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+        return this;
+    }
+
+    /**
+     * Cache the result of parsing source files in the 
+     * given directory, so that unchanged files are not
+     * parsed again by a later type checker. Entries are
+     * keyed by the content of the file, so the directory
+     * may be shared between projects.
+     */
+    public TypeCheckerBuilder parseCacheDirectory(File directory) {
+        this.parseCacheDirectory = directory;
+        return this;
+    }
+
+    /**
+     * Report the time taken, and the memory allocated, by
+     * each phase, and by each visitor, for each unit, to 
+     * the given listener, for example, a
+     * {@link com.redhat.ceylon.compiler.typechecker.util.PhaseProfiler}.
+     */
+    public TypeCheckerBuilder phaseListener(PhaseListener phaseListener) {
+        this.phaseListener = phaseListener;
+        return this;
+    }
+
+    /**
+     * Report each error and warning to the given listener
+     * as soon as it is found, tagged with its unit and
+     * phase.
+     */
+    public TypeCheckerBuilder diagnosticListener(DiagnosticListener diagnosticListener) {
+        this.diagnosticListener = diagnosticListener;
+        return this;
+    }
+
+    /**
+     * Stop type checking once the given number of errors
+     * has been found, skipping the remaining units and
+     * phases. Warnings don't count. Zero, the default,
+     * means there is no limit.
+     * 
+     * @see TypeChecker#isAborted()
+     */
+    public TypeCheckerBuilder errorLimit(int errorLimit) {
+        if (errorLimit<0) {
+            throw new IllegalArgumentException("negative error limit: " + errorLimit);
+        }
+        this.errorLimit = errorLimit;
+        return this;
+    }
+
+    /**
+     * Skip flow analysis and usage analysis for units in
+     * which the lexer or parser found errors. Their other
+     * errors are still reported, but definite assignment
+     * errors and usage warnings are not.
+     */
+    public TypeCheckerBuilder skipFlowAnalysisOnSyntaxErrors(boolean skip) {
+        this.skipFlowAnalysisOnSyntaxErrors = skip;
+        return this;
+    }
+
+    /**
+     * Keep the token stream of each source file, as
+     * returned by {@link PhasedUnit#getTokens()}, which
+     * is only needed by tools like an IDE, and is kept by
+     * default.
+     */
+    public TypeCheckerBuilder retainTokens(boolean retainTokens) {
+        this.retainTokens = retainTokens;
+        return this;
+    }
+
+    /**
+     * Discard the tree and tokens of every unit once 
+     * {@link TypeChecker#process()} has collected the
+     * errors, keeping only the model, for clients which
+     * have no use for the trees, and which collect the
+     * errors with a {@link DiagnosticListener}.
+     * 
+     * @see TypeChecker#releaseTrees()
+     */
+    public TypeCheckerBuilder retainModelOnly(boolean retainModelOnly) {
+        this.retainModelOnly = retainModelOnly;
+        return this;
+    }
+
+    /**
+     * Let definite assignment and self reference analysis
+     * skip the statements which can't affect a declaration,
+     * according to a {@link 
+     * com.redhat.ceylon.compiler.typechecker.analyzer.FlowAnalysisIndex}.
+     * Experimental, and off by default.
+     */
+    public TypeCheckerBuilder pruneFlowAnalysis(boolean pruneFlowAnalysis) {
+        this.pruneFlowAnalysis = pruneFlowAnalysis;
+        return this;
+    }
+
     public TypeCheckerBuilder encoding(String value) {
         encoding = value;
         return this;
@@ -151,7 +284,10 @@ public class TypeCheckerBuilder {
                     .buildManager();
         }
         return new TypeChecker(vfs, srcDirectories, repositoryManager, verifyDependencies, assertionVisitor,
-                moduleManagerFactory, verbose, statistics, moduleFilters, srcFiles, encoding);
+                moduleManagerFactory, verbose, statistics, moduleFilters, srcFiles, encoding, forkJoinPool, 
+                parseCacheDirectory, phaseListener, diagnosticListener,
+                errorLimit, skipFlowAnalysisOnSyntaxErrors, retainTokens,
+                retainModelOnly, pruneFlowAnalysis);
     }
 
 }
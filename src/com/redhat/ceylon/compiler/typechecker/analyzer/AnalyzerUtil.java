@@ -15,12 +15,9 @@ import static com.redhat.ceylon.model.typechecker.model.ModelUtil.isTypeUnknown;
 import static com.redhat.ceylon.model.typechecker.model.ModelUtil.unionType;
 import static com.redhat.ceylon.model.typechecker.model.SiteVariance.IN;
 import static com.redhat.ceylon.model.typechecker.model.SiteVariance.OUT;
-import static java.lang.Character.isUpperCase;
 import static java.util.Collections.emptyList;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -32,7 +29,7 @@ import com.redhat.ceylon.compiler.typechecker.tree.Node;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.ClassBody;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.TypeVariance;
-import com.redhat.ceylon.compiler.typechecker.util.NormalizedLevenshtein;
+import com.redhat.ceylon.compiler.typechecker.util.SuggestionIndex;
 import com.redhat.ceylon.model.cmr.JDKUtils;
 import com.redhat.ceylon.model.typechecker.model.Class;
 import com.redhat.ceylon.model.typechecker.model.Constructor;
@@ -64,9 +61,6 @@ import com.redhat.ceylon.model.typechecker.model.Value;
  */
 public class AnalyzerUtil {
     
-//    static final JaroWinkler distance = new JaroWinkler();
-    static final NormalizedLevenshtein distance = new NormalizedLevenshtein();
-    
     static final List<Type> NO_TYPE_ARGS = emptyList();
     
     static TypedDeclaration getTypedMember(TypeDeclaration td, 
@@ -179,54 +173,33 @@ public class AnalyzerUtil {
         return null;
     }
     
-    static String correct(Scope scope, Unit unit, final String name) {
-        final boolean ucase = isUpperCase(name.charAt(0));
-        Set<String> names = 
+    static String correct(Scope scope, Unit unit, String name) {
+        return suggestionIndex(scope, unit).suggest(name);
+    }
+
+    static String correct(TypeDeclaration type, Scope scope, Unit unit, String name) {
+        return suggestionIndex(type, scope, unit).suggest(name);
+    }
+    
+    /**
+     * An index of the names visible in the given scope,
+     * for suggesting corrections to misspelled names.
+     */
+    static SuggestionIndex suggestionIndex(Scope scope, Unit unit) {
+        return new SuggestionIndex(
                 scope.getMatchingDeclarations(unit, "", 0)
-                    .keySet();
-        return Collections.max(
-                names, 
-                new Comparator<String>() {
-            @Override
-            public int compare(String x, String y) {
-                boolean xucase = isUpperCase(x.charAt(0));
-                boolean yucase = isUpperCase(y.charAt(0));
-                if (ucase==xucase && ucase!=yucase) {
-                    return 1;
-                }
-                if (ucase==yucase && ucase!=xucase) {
-                    return -1;
-                }
-                return Double.compare(
-                        distance.similarity(name, x),
-                        distance.similarity(name, y));
-            }
-        });
+                    .keySet());
     }
 
-    static String correct(TypeDeclaration type, Scope scope, Unit unit, final String name) {
-        final boolean ucase = isUpperCase(name.charAt(0));
-        Set<String> names = 
+    /**
+     * An index of the names of the members of the given
+     * type which are visible in the given scope, for 
+     * suggesting corrections to misspelled names.
+     */
+    static SuggestionIndex suggestionIndex(TypeDeclaration type, Scope scope, Unit unit) {
+        return new SuggestionIndex(
                 type.getMatchingMemberDeclarations(unit, scope, "", 0)
-                    .keySet();
-        return Collections.max(
-                names, 
-                new Comparator<String>() {
-            @Override
-            public int compare(String x, String y) {
-                boolean xucase = isUpperCase(x.charAt(0));
-                boolean yucase = isUpperCase(y.charAt(0));
-                if (ucase==xucase && ucase!=yucase) {
-                    return 1;
-                }
-                if (ucase==yucase && ucase!=xucase) {
-                    return -1;
-                }
-                return Double.compare(
-                        distance.similarity(name, x),
-                        distance.similarity(name, y));
-            }
-        });
+                    .keySet());
     }
 
     /**
@@ -645,7 +645,6 @@ public abstract class DeclarationVisitor extends Visitor {
     @Override
     public void visitAny(Node that) {
         that.setScope(scope);
-        that.setUnit(unit);
         super.visitAny(that);
     }
     
@@ -696,6 +695,9 @@ public abstract class DeclarationVisitor extends Visitor {
         unit.setSupportedBackends(that.getUnit().getSupportedBackends());
         pkg.removeUnit(unit);
         pkg.addUnit(unit);
+        //the other nodes of the tree share the unit of
+        //the root, unless they have their own
+        that.setUnit(unit);
         super.visit(that);
         Node firstNonImportNode = null;
         int index = -1;
@@ -6,7 +6,6 @@ import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.check
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.checkCasesDisjoint;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.checkIsExactlyForInterop;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.checkSupertype;
-import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.correct;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.declaredInPackage;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.getMatchingParameter;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.getPackageTypeDeclaration;
@@ -138,6 +137,8 @@ public class ExpressionVisitor extends Visitor {
     
     private TypecheckerUnit unit;
     
+    private final Suggestions suggestions = new Suggestions();
+    
     private Tree.IfClause ifClause() {
         if (ifStatementOrExpression 
                 instanceof Tree.IfStatement) {
@@ -3172,6 +3173,8 @@ public class ExpressionVisitor extends Visitor {
         Function m = anon.getDeclarationModel();
         model.setContainer(m);
         m.addMember(model);
+        //the new parameter is visible in the function
+        suggestions.clear();
     }
     
     private void visitInvocationPositionalArgs(
@@ -6117,7 +6120,7 @@ public class ExpressionVisitor extends Visitor {
                     !isNativeForWrongBackend(
                             scope.getScopedBackends()) &&
                     error) {
-                String correction = correct(scope, unit, name);
+                String correction = suggestions.correct(scope, unit, name);
                 String message = correction==null ? "" :
                     " (did you mean '" + correction + "'?)";
                 that.addError(
@@ -6359,7 +6362,7 @@ public class ExpressionVisitor extends Visitor {
                                 signature, spread);
                 if (member==null) {
                     String correction =
-                            correct(d, scope, unit, name);
+                            suggestions.correct(d, scope, unit, name);
                     container += correction==null ? "" :
                         " (did you mean '" + correction + "'?)";
                 }
@@ -6748,7 +6751,7 @@ public class ExpressionVisitor extends Visitor {
                     !isNativeForWrongBackend(
                             scope.getScopedBackends())) {
                 String correction = 
-                        correct(scope, unit, name);
+                        suggestions.correct(scope, unit, name);
                 String message = correction==null ? "" :
                     " (did you mean '" + correction + "'?)";
                 that.addError(
@@ -7109,7 +7112,7 @@ public class ExpressionVisitor extends Visitor {
                                 signature, spread);
                 if (type==null) {
                     String correction =
-                            correct(d, scope, unit, name);
+                            suggestions.correct(d, scope, unit, name);
                     container += correction==null ? "" :
                         " (did you mean '" + correction + "'?)";
                 }
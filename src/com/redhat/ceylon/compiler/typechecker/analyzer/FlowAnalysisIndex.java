@@ -0,0 +1,340 @@
+package com.redhat.ceylon.compiler.typechecker.analyzer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.redhat.ceylon.compiler.typechecker.parser.RecognitionError;
+import com.redhat.ceylon.compiler.typechecker.tree.Message;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
+import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
+import com.redhat.ceylon.model.typechecker.model.Constructor;
+import com.redhat.ceylon.model.typechecker.model.Declaration;
+import com.redhat.ceylon.model.typechecker.model.Parameter;
+import com.redhat.ceylon.model.typechecker.model.Scope;
+import com.redhat.ceylon.model.typechecker.model.Setter;
+import com.redhat.ceylon.model.typechecker.model.TypeDeclaration;
+import com.redhat.ceylon.model.typechecker.model.Value;
+
+/**
+ * Records, in a single pass over a compilation unit,
+ * which statements could possibly matter to the
+ * {@link SpecificationVisitor} and
+ * {@link SelfReferenceVisitor} of a given declaration.
+ * These visitors run once per declaration, and use the
+ * index to step over statements which don't mention
+ * the declaration and can't otherwise influence the
+ * analysis, instead of rewalking the whole unit every
+ * time.
+ *
+ * If the unit has syntax errors, or the index can't be
+ * built, every statement is considered relevant.
+ *
+ */
+public class FlowAnalysisIndex extends Visitor {
+
+    private final List<Tree.Statement> statements =
+            new ArrayList<Tree.Statement>();
+
+    /**
+     * The statements containing something that refers
+     * to or declares a model object, which is either a
+     * declaration or, for bodies, their scope.
+     */
+    private final Map<Object,Set<Tree.Statement>> mentions =
+            new IdentityHashMap<Object,Set<Tree.Statement>>();
+
+    /**
+     * The statements containing a directive, assertion,
+     * or control structure whose effect on definite
+     * specification doesn't depend on the declaration.
+     */
+    private final Set<Tree.Statement> flow =
+            new HashSet<Tree.Statement>();
+
+    /**
+     * The statements containing a constructor, whose
+     * initialization state is shared between the
+     * declarations of a class.
+     */
+    private final Set<Tree.Statement> constructors =
+            new HashSet<Tree.Statement>();
+
+    /**
+     * The statements containing a reference to
+     * {@code super}.
+     */
+    private final Set<Tree.Statement> supers =
+            new HashSet<Tree.Statement>();
+
+    private boolean incomplete = false;
+
+    /**
+     * Could the given statement affect the specification
+     * analysis of the given declaration?
+     */
+    boolean mayAffectSpecification(Tree.Statement that,
+            Declaration declaration) {
+        if (incomplete ||
+                constructors.contains(that) ||
+                mentions(that, declaration) ||
+                mentions(that, declaration.getContainer())) {
+            return true;
+        }
+        else if (isSelfContained(that)) {
+            return false;
+        }
+        else {
+            return flow.contains(that);
+        }
+    }
+
+    /**
+     * Could the given declaration, which occurs outside
+     * the body of the given type declaration, affect its
+     * self reference analysis?
+     */
+    boolean mayAffectSelfReference(Tree.Declaration that,
+            TypeDeclaration typeDeclaration) {
+        return incomplete ||
+                supers.contains(that) ||
+                mentions(that, typeDeclaration);
+    }
+
+    /**
+     * A nested declaration has its own specification
+     * scope, unless it occurs directly in a constructor
+     * or in the initializer of a value.
+     */
+    private static boolean isSelfContained(Tree.Statement that) {
+        if (that instanceof Tree.Declaration) {
+            Scope scope = that.getScope();
+            return !(scope instanceof Constructor) &&
+                    !(scope instanceof Value &&
+                            !((Value) scope).isTransient());
+        }
+        else {
+            return false;
+        }
+    }
+
+    private boolean mentions(Tree.Statement that, Object model) {
+        Set<Tree.Statement> set = mentions.get(model);
+        return set!=null && set.contains(that);
+    }
+
+    private void mention(Node that, Object model) {
+        if (model!=null) {
+            Set<Tree.Statement> set = mentions.get(model);
+            if (set==null) {
+                set = new HashSet<Tree.Statement>();
+                mentions.put(model, set);
+            }
+            mark(set, that);
+        }
+    }
+
+    /**
+     * Add the node, if it is a statement, and the
+     * statements containing it to the given set. Stops
+     * at the first statement already in the set, since
+     * the statements containing it must be there too.
+     */
+    private void mark(Set<Tree.Statement> set, Node that) {
+        if (that instanceof Tree.Statement) {
+            set.add((Tree.Statement) that);
+        }
+        for (int i=statements.size()-1; i>=0; i--) {
+            if (!set.add(statements.get(i))) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void handleException(Exception e, Node that) {
+        //don't report anything, just don't rely on
+        //the index
+        incomplete = true;
+    }
+
+    @Override
+    public void visitAny(Node that) {
+        for (Message error: that.getErrors()) {
+            if (error instanceof RecognitionError) {
+                incomplete = true;
+            }
+        }
+        super.visitAny(that);
+    }
+
+    @Override
+    public void visit(Tree.Statement that) {
+        statements.add(that);
+        super.visit(that);
+        statements.remove(statements.size()-1);
+    }
+
+    @Override
+    public void visit(Tree.Declaration that) {
+        mention(that, that.getDeclarationModel());
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.AttributeSetterDefinition that) {
+        Setter setter = that.getDeclarationModel();
+        if (setter==null || setter.getParameter()==null) {
+            incomplete = true;
+        }
+        else {
+            mention(that, setter.getParameter().getModel());
+        }
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.Constructor that) {
+        mark(constructors, that);
+        mention(that, that.getConstructor());
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.Enumerated that) {
+        mark(constructors, that);
+        mention(that, that.getEnumerated());
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.DelegatedConstructor that) {
+        mark(constructors, that);
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.TypedArgument that) {
+        mention(that, that.getDeclarationModel());
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.ObjectDefinition that) {
+        mention(that, that.getAnonymousClass());
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.ObjectArgument that) {
+        mention(that, that.getAnonymousClass());
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.ObjectExpression that) {
+        mention(that, that.getAnonymousClass());
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.MemberOrTypeExpression that) {
+        mention(that, that.getDeclaration());
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.MetaLiteral that) {
+        mention(that, that.getDeclaration());
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.Parameter that) {
+        Parameter p = that.getParameterModel();
+        if (p==null) {
+            incomplete = true;
+        }
+        else {
+            mention(that, p.getModel());
+        }
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.InitializerParameter that) {
+        Parameter p = that.getParameterModel();
+        Scope scope = that.getScope();
+        if (p!=null && scope!=null) {
+            mention(that,
+                    scope.getDirectMember(p.getName(),
+                            null, false));
+        }
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.Body that) {
+        mention(that, that.getScope());
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.Return that) {
+        mark(flow, that);
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.Throw that) {
+        mark(flow, that);
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.Break that) {
+        mark(flow, that);
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.Continue that) {
+        mark(flow, that);
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.Assertion that) {
+        mark(flow, that);
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.ForStatement that) {
+        mark(flow, that);
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.TryCatchStatement that) {
+        mark(flow, that);
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.SwitchStatement that) {
+        mark(flow, that);
+        super.visit(that);
+    }
+
+    @Override
+    public void visit(Tree.Super that) {
+        mark(supers, that);
+        super.visit(that);
+    }
+
+}
@@ -12,6 +12,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.redhat.ceylon.cmr.api.ArtifactContext;
 import com.redhat.ceylon.cmr.api.RepositoryManager;
@@ -59,6 +60,8 @@ public class ModuleSourceMapper {
     private Context context;
     private Modules modules;
     private static Object PRESENT = new Object();
+    private final Map<Module, PrefetchedSource> prefetchedSources = 
+            new ConcurrentHashMap<Module, PrefetchedSource>();
 
     public ModuleSourceMapper(Context context, ModuleManager moduleManager) {
         this.context = context;
@@ -296,17 +299,93 @@ public class ModuleSourceMapper {
         return moduleToNode.keySet();
     }
     
+    /**
+     * The source artifact of a module, looked up, and its
+     * source files parsed, ahead of resolution.
+     */
+    private static final class PrefetchedSource {
+        final ArtifactContext artifactContext;
+        ArtifactResult sourceArtifact;
+        Exception exceptionOnGetArtifact;
+        PhasedUnits.Preparsed preparsed;
+        PrefetchedSource(ArtifactContext artifactContext) {
+            this.artifactContext = artifactContext;
+        }
+    }
+    
+    /**
+     * Look up the source artifact of the given module, 
+     * and parse its source files, ahead of a later call 
+     * to {@link #resolveModule} for the same module. This
+     * does not touch the model, so it may be called on 
+     * any thread, concurrently with anything but 
+     * {@link #clearPrefetchedModules()}. Only called if
+     * {@link #prefetchesSources()}.
+     */
+    public void prefetchModule(ArtifactResult artifact, Module module) {
+        PrefetchedSource prefetched = 
+                new PrefetchedSource(new ArtifactContext(module.getNameAsString(), module.getVersion(), ArtifactContext.SRC));
+        try {
+            prefetched.sourceArtifact = context.getRepositoryManager().getArtifactResult(prefetched.artifactContext);
+        } catch (Exception e) {
+            prefetched.exceptionOnGetArtifact = e;
+        }
+        if (prefetched.sourceArtifact != null) {
+            ClosableVirtualFile virtualArtifact = null;
+            try {
+                virtualArtifact = context.getVfs().getFromZipFile(prefetched.sourceArtifact.artifact());
+                prefetched.preparsed = PhasedUnits.preparse(context, virtualArtifact, null);
+            } catch (Exception e) {
+                //parse it again when resolving it, and report the error then
+            } finally {
+                if (virtualArtifact != null) {
+                    virtualArtifact.close();
+                }
+            }
+        }
+        prefetchedSources.put(module, prefetched);
+    }
+    
+    /**
+     * Should the sources of modules be 
+     * {@linkplain #prefetchModule prefetched}? Only if
+     * they are read by {@link #resolveModule}, which is
+     * the case for this class, but not for subclasses,
+     * which usually resolve modules some other way, and 
+     * must override this to opt in.
+     */
+    protected boolean prefetchesSources() {
+        return getClass()==ModuleSourceMapper.class;
+    }
+    
+    /**
+     * Forget the modules which were prefetched, but never
+     * resolved.
+     */
+    public void clearPrefetchedModules() {
+        prefetchedSources.clear();
+    }
+    
     public void resolveModule(ArtifactResult artifact, Module module, ModuleImport moduleImport, LinkedList<Module> dependencyTree, List<PhasedUnits> phasedUnitsOfDependencies, boolean forCompiledModule) {
         //This implementation relies on the ability to read the model from source
         //the compiler for example subclasses this to read lazily and from the compiled model
-        ArtifactContext artifactContext = new ArtifactContext(module.getNameAsString(), module.getVersion(), ArtifactContext.SRC);
-        RepositoryManager repositoryManager = context.getRepositoryManager();
+        PrefetchedSource prefetched = prefetchedSources.remove(module);
+        ArtifactContext artifactContext;
         Exception exceptionOnGetArtifact = null;
         ArtifactResult sourceArtifact = null;
-        try {
-            sourceArtifact = repositoryManager.getArtifactResult(artifactContext);
-        } catch (Exception e) {
-            exceptionOnGetArtifact = e;
+        if (prefetched != null) {
+            artifactContext = prefetched.artifactContext;
+            sourceArtifact = prefetched.sourceArtifact;
+            exceptionOnGetArtifact = prefetched.exceptionOnGetArtifact;
+        }
+        else {
+            artifactContext = new ArtifactContext(module.getNameAsString(), module.getVersion(), ArtifactContext.SRC);
+            RepositoryManager repositoryManager = context.getRepositoryManager();
+            try {
+                sourceArtifact = repositoryManager.getArtifactResult(artifactContext);
+            } catch (Exception e) {
+                exceptionOnGetArtifact = e;
+            }
         }
         if ( sourceArtifact == null ) {
             ModuleHelper.buildErrorOnMissingArtifact(artifactContext, module, moduleImport, dependencyTree, exceptionOnGetArtifact, this);
@@ -314,10 +393,14 @@ public class ModuleSourceMapper {
         else {
             
             PhasedUnits modulePhasedUnits = createPhasedUnits();
+            if (prefetched != null) {
+                modulePhasedUnits.setPreparsed(prefetched.preparsed);
+            }
             ClosableVirtualFile virtualArtifact= null;
             try {
                 virtualArtifact = context.getVfs().getFromZipFile(sourceArtifact.artifact());
                 modulePhasedUnits.parseUnit(virtualArtifact);
+                modulePhasedUnits.setPreparsed(null);
                 //populate module.getDependencies()
                 modulePhasedUnits.visitModules();
                 addToPhasedUnitsOfDependencies(modulePhasedUnits, phasedUnitsOfDependencies, module);
@@ -10,6 +10,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import com.redhat.ceylon.cmr.api.ArtifactContext;
 import com.redhat.ceylon.cmr.api.RepositoryManager;
@@ -42,6 +45,8 @@ public class ModuleValidator {
     private final ModuleManager moduleManager;
     private final ModuleSourceMapper moduleManagerUtil;
     private Map<Module, ArtifactResult> searchedArtifacts = new HashMap<Module, ArtifactResult>();
+    private ForkJoinPool forkJoinPool;
+    private Map<Module, ForkJoinTask<ArtifactLookup>> prefetchedArtifacts = new HashMap<Module, ForkJoinTask<ArtifactLookup>>();
 
     public static interface ProgressListener {
         void retrievingModuleArtifact(Module module, ArtifactContext artifactContext);
@@ -80,6 +85,19 @@ public class ModuleValidator {
         this.listener = listener;
     }
 
+    /**
+     * Look up the artifacts of the modules imported by a
+     * module, and parse their sources, concurrently using
+     * the given pool, which requires a repository manager
+     * which supports concurrent lookups. The dependency 
+     * tree is still walked sequentially, and modules are 
+     * still resolved, and checked for circularities and 
+     * conflicts, in the same order.
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
     public List<PhasedUnits> getPhasedUnitsOfDependencies() {
         return phasedUnitsOfDependencies;
     }
@@ -106,11 +124,16 @@ public class ModuleValidator {
                 modules.add(context.getModules().getLanguageModule());
                 modules.add(context.getModules().getDefaultModule());
                 modules.addAll(compiledModules);
-                for (Module module : modules) {
-                    dependencyTree.addLast(module);
-                    //we don't care about propagated dependency here as top modules are independent from one another
-                    verifyModuleDependencyTree(module.getImports(), dependencyTree, new ArrayList<Module>(), ImportDepth.First, searchedArtifacts);
-                    dependencyTree.pollLast();
+                try {
+                    for (Module module : modules) {
+                        dependencyTree.addLast(module);
+                        //we don't care about propagated dependency here as top modules are independent from one another
+                        verifyModuleDependencyTree(module.getImports(), dependencyTree, new ArrayList<Module>(), ImportDepth.First, searchedArtifacts);
+                        dependencyTree.pollLast();
+                    }
+                }
+                finally {
+                    clearPrefetchedArtifacts();
                 }
                 for (Module module : compiledModules) {
                     verifyNative(module);
@@ -203,6 +226,7 @@ public class ModuleValidator {
             Map<Module, ArtifactResult> alreadySearchedArtifacts) {
         List<Module> visibleDependencies = new ArrayList<Module>();
         visibleDependencies.add(dependencyTree.getLast()); //first addition => no possible conflict
+        prefetchArtifacts(moduleImports, alreadySearchedArtifacts);
         for (ModuleImport moduleImport : moduleImports) {
             if (moduleImport.isNative() &&
                     !isForBackend(moduleImport.getNativeBackends(), moduleManager)) {
@@ -226,14 +250,26 @@ public class ModuleValidator {
                     firstTime = false;
                 } else {
                     //try and load the module from the repository
-                    RepositoryManager repositoryManager = context.getRepositoryManager();
                     Exception exceptionOnGetArtifact = null;
-                    ArtifactContext artifactContext = new ArtifactContext(module.getNameAsString(), module.getVersion(), getArtifactSuffixes(searchedArtifactExtensions));
-                    listener.retrievingModuleArtifact(module, artifactContext);
-                    try {
-                        artifact = repositoryManager.getArtifactResult(artifactContext);
-                    } catch (Exception e) {
-                        exceptionOnGetArtifact = catchIfPossible(e);
+                    ArtifactContext artifactContext;
+                    ForkJoinTask<ArtifactLookup> prefetched = prefetchedArtifacts.remove(module);
+                    if (prefetched != null) {
+                        ArtifactLookup lookup = prefetched.join();
+                        artifactContext = lookup.artifactContext;
+                        artifact = lookup.artifact;
+                        if (lookup.exception != null) {
+                            exceptionOnGetArtifact = catchIfPossible(lookup.exception);
+                        }
+                    }
+                    else {
+                        RepositoryManager repositoryManager = context.getRepositoryManager();
+                        artifactContext = new ArtifactContext(module.getNameAsString(), module.getVersion(), getArtifactSuffixes(searchedArtifactExtensions));
+                        listener.retrievingModuleArtifact(module, artifactContext);
+                        try {
+                            artifact = repositoryManager.getArtifactResult(artifactContext);
+                        } catch (Exception e) {
+                            exceptionOnGetArtifact = catchIfPossible(e);
+                        }
                     }
                     if (artifact == null) {
                         //not there => error
@@ -285,6 +321,79 @@ public class ModuleValidator {
         }
     }
 
+    /**
+     * The result of looking up the artifact of a module.
+     */
+    private static final class ArtifactLookup {
+        final ArtifactContext artifactContext;
+        ArtifactResult artifact;
+        Exception exception;
+        ArtifactLookup(ArtifactContext artifactContext) {
+            this.artifactContext = artifactContext;
+        }
+    }
+
+    /**
+     * Start looking up the artifacts of the given imports
+     * which haven't been searched for yet, and, if the
+     * {@link ModuleSourceMapper} reads sources, parsing 
+     * their sources, on the pool, if any. The results are
+     * picked up, in order, by the walk of the dependency 
+     * tree. The listener is told that an artifact is
+     * being retrieved when its lookup starts.
+     */
+    private void prefetchArtifacts(Collection<ModuleImport> moduleImports, 
+            Map<Module, ArtifactResult> alreadySearchedArtifacts) {
+        if (forkJoinPool == null) {
+            return;
+        }
+        final RepositoryManager repositoryManager = context.getRepositoryManager();
+        final boolean prefetchSources = moduleManagerUtil.prefetchesSources();
+        Iterable<String> searchedArtifactExtensions = moduleManager.getSearchedArtifactExtensions();
+        for (ModuleImport moduleImport : moduleImports) {
+            if (moduleImport.isNative() &&
+                    !isForBackend(moduleImport.getNativeBackends(), moduleManager)) {
+                continue;
+            }
+            final Module module = moduleImport.getModule();
+            if (module.isAvailable() 
+                    || alreadySearchedArtifacts.containsKey(module)
+                    || prefetchedArtifacts.containsKey(module)) {
+                continue;
+            }
+            final ArtifactLookup lookup = 
+                    new ArtifactLookup(new ArtifactContext(module.getNameAsString(), module.getVersion(), getArtifactSuffixes(searchedArtifactExtensions)));
+            listener.retrievingModuleArtifact(module, lookup.artifactContext);
+            prefetchedArtifacts.put(module, forkJoinPool.submit(new Callable<ArtifactLookup>() {
+                @Override
+                public ArtifactLookup call() {
+                    try {
+                        lookup.artifact = repositoryManager.getArtifactResult(lookup.artifactContext);
+                    } catch (Exception e) {
+                        lookup.exception = e;
+                    }
+                    if (lookup.artifact != null && prefetchSources) {
+                        moduleManagerUtil.prefetchModule(lookup.artifact, module);
+                    }
+                    return lookup;
+                }
+            }));
+        }
+    }
+
+    /**
+     * Wait for the lookups of modules which were never 
+     * reached, because of a circularity or an override,
+     * and forget them.
+     */
+    private void clearPrefetchedArtifacts() {
+        for (ForkJoinTask<ArtifactLookup> prefetched : prefetchedArtifacts.values()) {
+            prefetched.quietlyJoin();
+        }
+        prefetchedArtifacts.clear();
+        moduleManagerUtil.clearPrefetchedModules();
+    }
+
     protected Exception catchIfPossible(Exception e) {
         return e;
     }
@@ -32,8 +32,21 @@ public class SelfReferenceVisitor extends Visitor {
     private boolean defaultArgument;
     private boolean inCaseTypesList;
 
+    private final FlowAnalysisIndex index;
+
     public SelfReferenceVisitor(TypeDeclaration td) {
+        this(td, null);
+    }
+    
+    /**
+     * @param index used to skip over declarations that 
+     *        can't affect the analysis of the given type 
+     *        declaration, or null
+     */
+    public SelfReferenceVisitor(TypeDeclaration td, 
+            FlowAnalysisIndex index) {
         typeDeclaration = td;
+        this.index = index;
     }
     
     private Declaration resolveTypeAliases(Declaration member) {
@@ -349,6 +362,18 @@ public class SelfReferenceVisitor extends Visitor {
         }
     }
     
+    @Override
+    public void visit(Tree.Declaration that) {
+        //outside the body of the type declaration, 
+        //only its own declaration and references to
+        //super matter
+        if (inBody() || index==null || 
+                index.mayAffectSelfReference(that, 
+                        typeDeclaration)) {
+            super.visit(that);
+        }
+    }
+    
     @Override
     public void visit(Tree.InterfaceBody that) {
         if (directlyInBody()) {
@@ -43,6 +43,7 @@ import com.redhat.ceylon.model.typechecker.model.Value;
 public class SpecificationVisitor extends Visitor {
     
     private final Declaration declaration;
+    private final FlowAnalysisIndex index;
     
     private SpecificationState specified = 
             new SpecificationState(false, false);
@@ -104,7 +105,24 @@ public class SpecificationVisitor extends Visitor {
     }
     
     public SpecificationVisitor(Declaration declaration) {
+        this(declaration, null);
+    }
+    
+    /**
+     * @param index used to skip over statements that 
+     *        can't affect the analysis of the given 
+     *        declaration, or null
+     */
+    public SpecificationVisitor(Declaration declaration, 
+            FlowAnalysisIndex index) {
         this.declaration = declaration;
+        this.index = index;
+    }
+    
+    private boolean isIrrelevant(Tree.Statement that) {
+        return index!=null && 
+                !index.mayAffectSpecification(that, 
+                        declaration);
     }
     
     private void declare() {
@@ -621,7 +639,19 @@ public class SpecificationVisitor extends Visitor {
                 that.getScope()==declaration.getContainer()) {
             hasParameter = false;
         }
-        super.visit(that);
+        if (index==null) {
+            super.visit(that);
+        }
+        else {
+            for (Tree.Statement st: that.getStatements()) {
+                if (isIrrelevant(st)) {
+                    checkDeclarationSection(st);
+                }
+                else {
+                    st.visit(this);
+                }
+            }
+        }
     }
 
     private static boolean isNonPartialConstructor(Scope scope) {
@@ -808,6 +838,9 @@ public class SpecificationVisitor extends Visitor {
             endDisabledSpecificationScope(false);
             inLoop = false;
         }
+        else if (isIrrelevant(that)) {
+            checkDeclarationSection(that);
+        }
         else {
             boolean l = inLoop;
             inLoop = false;
@@ -0,0 +1,73 @@
+package com.redhat.ceylon.compiler.typechecker.analyzer;
+
+import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.suggestionIndex;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.redhat.ceylon.compiler.typechecker.util.SuggestionIndex;
+import com.redhat.ceylon.model.typechecker.model.Scope;
+import com.redhat.ceylon.model.typechecker.model.TypeDeclaration;
+import com.redhat.ceylon.model.typechecker.model.Unit;
+
+/**
+ * Suggests corrections for misspelled names, like
+ * {@link AnalyzerUtil#correct(Scope, Unit, String)},
+ * but keeps the {@link SuggestionIndex} of each scope
+ * and type, so that the names visible in a scope are
+ * only collected once, no matter how many unresolved
+ * references it contains.
+ *
+ * The indexes are only valid while the declarations in
+ * the model stay the same, so a visitor keeps one of
+ * these for a single pass over a unit, and must
+ * {@link #clear()} it if it adds a declaration.
+ */
+class Suggestions {
+
+    private Unit unit;
+
+    private final Map<Scope,SuggestionIndex> scopes =
+            new IdentityHashMap<Scope,SuggestionIndex>();
+
+    private final Map<TypeDeclaration,Map<Scope,SuggestionIndex>> members =
+            new IdentityHashMap<TypeDeclaration,Map<Scope,SuggestionIndex>>();
+
+    String correct(Scope scope, Unit unit, String name) {
+        setUnit(unit);
+        SuggestionIndex index = scopes.get(scope);
+        if (index==null) {
+            index = suggestionIndex(scope, unit);
+            scopes.put(scope, index);
+        }
+        return index.suggest(name);
+    }
+
+    String correct(TypeDeclaration type, Scope scope, Unit unit, String name) {
+        setUnit(unit);
+        Map<Scope,SuggestionIndex> indexes = members.get(type);
+        if (indexes==null) {
+            indexes = new IdentityHashMap<Scope,SuggestionIndex>();
+            members.put(type, indexes);
+        }
+        SuggestionIndex index = indexes.get(scope);
+        if (index==null) {
+            index = suggestionIndex(type, scope, unit);
+            indexes.put(scope, index);
+        }
+        return index.suggest(name);
+    }
+
+    void clear() {
+        scopes.clear();
+        members.clear();
+    }
+
+    private void setUnit(Unit unit) {
+        if (this.unit!=unit) {
+            clear();
+            this.unit = unit;
+        }
+    }
+
+}
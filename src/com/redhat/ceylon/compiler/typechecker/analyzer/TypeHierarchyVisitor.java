@@ -16,6 +16,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.redhat.ceylon.common.Backends;
 import com.redhat.ceylon.compiler.typechecker.tree.Node;
@@ -47,7 +49,32 @@ import com.redhat.ceylon.model.typechecker.model.Value;
  */
 public class TypeHierarchyVisitor extends Visitor {
 
-    private final Map<TypeDeclKey,Type> types = new HashMap<TypeDeclKey, Type>();
+    /**
+     * The members of each type declaration, as classified
+     * by this visitor. A cache may be shared by the
+     * visitors of every unit, on any thread, so that the
+     * members of common supertypes are only classified
+     * once, but must be {@linkplain #clear() cleared}
+     * whenever the type declarations change.
+     */
+    public static final class Cache {
+        private final ConcurrentMap<TypeDeclKey,Type> types = 
+                new ConcurrentHashMap<TypeDeclKey,Type>();
+        
+        public void clear() {
+            types.clear();
+        }
+    }
+    
+    private final Cache cache;
+    
+    public TypeHierarchyVisitor() {
+        this(new Cache());
+    }
+    
+    public TypeHierarchyVisitor(Cache cache) {
+        this.cache = cache;
+    }
 
     private static final class Type {
         public Map<String,Members> membersByName = new HashMap<String, Members>();
@@ -578,7 +605,8 @@ public class TypeHierarchyVisitor extends Visitor {
     }*/
 
     private Type getOrBuildType(TypeDeclaration declaration) {
-        Type type = types.get(new TypeDeclKey(declaration));
+        TypeDeclKey key = new TypeDeclKey(declaration);
+        Type type = cache.types.get(key);
         if (type == null) {
             type = new Type();
             type.declaration = declaration;
@@ -627,7 +655,12 @@ public class TypeHierarchyVisitor extends Visitor {
                     members.shared.add(member);
                 }
             }
-            types.put(new TypeDeclKey(declaration),type);
+            //the type is never modified once it has been
+            //built, so another thread may share it
+            Type existing = cache.types.putIfAbsent(key, type);
+            if (existing != null) {
+                type = existing;
+            }
         }
         return type;
     }
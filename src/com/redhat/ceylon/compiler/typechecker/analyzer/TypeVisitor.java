@@ -1,6 +1,5 @@
 package com.redhat.ceylon.compiler.typechecker.analyzer;
 
-import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.correct;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.getPackageTypeDeclaration;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.getTypeArguments;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.getTypeDeclaration;
@@ -72,6 +71,8 @@ import com.redhat.ceylon.model.typechecker.model.Value;
 public class TypeVisitor extends Visitor {
     
     private TypecheckerUnit unit;
+    
+    private final Suggestions suggestions = new Suggestions();
 
     private boolean inDelegatedConstructor;
     private boolean inTypeLiteral;
@@ -375,7 +376,7 @@ public class TypeVisitor extends Visitor {
             if (type==null) {
                 if (!isNativeForWrongBackend(
                         scope.getScopedBackends())) {
-                    String correction = correct(scope, unit, name);
+                    String correction = suggestions.correct(scope, unit, name);
                     String message = correction==null ? "" :
                         " (did you mean '" + correction + "'?)";
                     that.addError("type declaration does not exist: '" + 
@@ -478,7 +479,7 @@ public class TypeVisitor extends Visitor {
                         }
                         else {
                             String correction = 
-                                    correct(d, null, unit, name);
+                                    suggestions.correct(d, null, unit, name);
                             String message = correction==null ? "" :
                                 " (did you mean '" + correction + "'?)";
                             that.addError("member type declaration does not exist: '" + 
@@ -1,6 +1,9 @@
 package com.redhat.ceylon.compiler.typechecker.context;
 
+import java.io.File;
+
 import com.redhat.ceylon.cmr.api.RepositoryManager;
+import com.redhat.ceylon.compiler.typechecker.analyzer.TypeHierarchyVisitor;
 import com.redhat.ceylon.compiler.typechecker.io.VFS;
 import com.redhat.ceylon.model.typechecker.model.Modules;
 
@@ -14,6 +17,13 @@ public class Context {
     private Modules modules;
     private VFS vfs;
     private RepositoryManager repositoryManager;
+    private ParseCache parseCache;
+    private final TypeHierarchyVisitor.Cache typeHierarchyCache = 
+            new TypeHierarchyVisitor.Cache();
+    private PhaseListener phaseListener;
+    private DiagnosticListener diagnosticListener;
+    private boolean retainTokens = true;
+    private boolean pruneFlowAnalysis = false;
 
     public Context(RepositoryManager repositoryManager, VFS vfs) {
         this.vfs = vfs;
@@ -35,4 +45,77 @@ public class Context {
     public VFS getVfs() {
         return vfs;
     }
+    
+    /**
+     * Cache the result of parsing source files, including
+     * the sources of dependencies, in the given directory,
+     * or disable caching if the directory is null.
+     */
+    public void setParseCacheDirectory(File directory) {
+        this.parseCache = directory == null ? 
+                null : new ParseCache(directory);
+    }
+    
+    ParseCache getParseCache() {
+        return parseCache;
+    }
+    
+    /**
+     * The members of the type declarations, as classified
+     * by the {@link TypeHierarchyVisitor}, shared by all
+     * the units.
+     */
+    public TypeHierarchyVisitor.Cache getTypeHierarchyCache() {
+        return typeHierarchyCache;
+    }
+    
+    /**
+     * The listener notified of the work done by each 
+     * phase for each unit, or null.
+     */
+    public PhaseListener getPhaseListener() {
+        return phaseListener;
+    }
+    
+    public void setPhaseListener(PhaseListener phaseListener) {
+        this.phaseListener = phaseListener;
+    }
+    
+    /**
+     * The listener notified of each message as soon as
+     * it is found, or null.
+     */
+    public DiagnosticListener getDiagnosticListener() {
+        return diagnosticListener;
+    }
+    
+    public void setDiagnosticListener(DiagnosticListener diagnosticListener) {
+        this.diagnosticListener = diagnosticListener;
+    }
+    
+    /**
+     * Do units keep the token stream of their source file?
+     * If not, {@link PhasedUnit#getTokens()} is empty, but
+     * the nodes of the tree still have their tokens.
+     */
+    public boolean isRetainTokens() {
+        return retainTokens;
+    }
+    
+    public void setRetainTokens(boolean retainTokens) {
+        this.retainTokens = retainTokens;
+    }
+    
+    /**
+     * Does flow analysis skip statements which can't
+     * affect the declaration being analysed? Off by
+     * default.
+     */
+    public boolean isPruneFlowAnalysis() {
+        return pruneFlowAnalysis;
+    }
+    
+    public void setPruneFlowAnalysis(boolean pruneFlowAnalysis) {
+        this.pruneFlowAnalysis = pruneFlowAnalysis;
+    }
 }
@@ -0,0 +1,37 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+import com.redhat.ceylon.compiler.typechecker.tree.Message;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
+
+/**
+ * Notified of each error and warning as soon as it is
+ * added to a node of a {@link PhasedUnit}, instead of
+ * once every phase has completed for every unit.
+ * 
+ * A listener is called on the thread which found the
+ * message, so it must be thread safe if units are
+ * processed concurrently. Messages are still attached
+ * to their nodes, and collected by the 
+ * {@link com.redhat.ceylon.compiler.typechecker.util.AssertionVisitor}
+ * as before. Clients which suppress warnings after type 
+ * checking will still see the suppressed warnings here.
+ *
+ * @see com.redhat.ceylon.compiler.typechecker.TypeCheckerBuilder#diagnosticListener(DiagnosticListener)
+ */
+public interface DiagnosticListener {
+
+    /**
+     * A message was added to the given node.
+     * 
+     * @param unit the unit being processed, or null for
+     *        errors found while resolving modules and
+     *        their dependencies
+     * @param phase the phase which found the message, or
+     *        null for errors found by the parser, or
+     *        while processing module and package
+     *        descriptors, or resolving modules
+     */
+    void messageAdded(PhasedUnit unit, Phase phase, 
+            Node node, Message message);
+
+}
@@ -0,0 +1,58 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+import com.redhat.ceylon.compiler.typechecker.tree.Message;
+import com.redhat.ceylon.compiler.typechecker.tree.MessageListener;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
+
+/**
+ * The unit, and phase, being processed by the current
+ * thread, to whose {@link DiagnosticListener} messages 
+ * added to nodes are reported. Scopes nest, since a
+ * phase of one unit may run a phase of another. While
+ * modules are resolved, there is a scope with neither
+ * a unit nor a phase.
+ */
+public final class DiagnosticScope implements MessageListener {
+
+    private final DiagnosticListener listener;
+    private final PhasedUnit unit;
+    private final Phase phase;
+    private MessageListener outer;
+
+    private DiagnosticScope(DiagnosticListener listener, 
+            PhasedUnit unit, Phase phase) {
+        this.listener = listener;
+        this.unit = unit;
+        this.phase = phase;
+    }
+
+    /**
+     * Report the messages added to nodes by the current
+     * thread to the given listener, until {@link #exit()}
+     * is called.
+     * 
+     * @param unit the unit being processed, or null
+     * @param phase the phase being run, or null
+     */
+    public static DiagnosticScope enter(DiagnosticListener listener, 
+            PhasedUnit unit, Phase phase) {
+        DiagnosticScope scope = 
+                new DiagnosticScope(listener, unit, phase);
+        scope.outer = Node.setMessageListener(scope);
+        return scope;
+    }
+
+    /**
+     * Go back to the scope which was current when this 
+     * scope was entered.
+     */
+    public void exit() {
+        Node.setMessageListener(outer);
+    }
+
+    @Override
+    public void messageAdded(Node node, Message message) {
+        listener.messageAdded(unit, phase, node, message);
+    }
+
+}
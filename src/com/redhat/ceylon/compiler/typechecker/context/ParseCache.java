@@ -0,0 +1,456 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+
+import com.redhat.ceylon.compiler.typechecker.io.impl.Helper;
+import com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer;
+import com.redhat.ceylon.compiler.typechecker.parser.CeylonParser;
+import com.redhat.ceylon.compiler.typechecker.tree.MissingToken;
+import com.redhat.ceylon.compiler.typechecker.tree.NodeInput;
+import com.redhat.ceylon.compiler.typechecker.tree.NodeOutput;
+import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+import com.redhat.ceylon.compiler.typechecker.tree.TreeSerializer;
+
+/**
+ * An on-disk cache of parsed source files, keyed by the
+ * content of the file, its encoding, and the version of
+ * the grammar and of the node declarations. Only files 
+ * which parsed without errors are cached.
+ *
+ * Entries are stored in a compact binary form: the
+ * token stream, followed by the tree, as written by the
+ * {@link TreeSerializer} which treegen generates from
+ * Ceylon.nodes, whose nodes refer to tokens by index. 
+ * Token text is not stored unless it differs from the 
+ * source text, and is sliced from the source text when 
+ * requested.
+ *
+ * The cache is best effort: an entry which cannot be
+ * read or written is simply ignored.
+ */
+final class ParseCache {
+
+    /**
+     * The version of the format of the entries, and of
+     * the tokens and text written for each node, to be 
+     * increased whenever either changes.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int NULL = -1;
+    private static final int COMMON_TOKEN = 0;
+    private static final int MISSING_TOKEN = 1;
+
+    private static byte[] grammarVersion;
+
+    private final File directory;
+
+    ParseCache(File directory) {
+        this.directory = directory;
+        directory.mkdirs();
+    }
+
+    /**
+     * Get the cached result of parsing the given source
+     * text, or null if it was not cached.
+     */
+    ParsedFile get(byte[] content, String encoding) {
+        File file = entry(content, encoding);
+        if (file==null || !file.isFile()) {
+            return null;
+        }
+        try {
+            byte[] entry = Files.readAllBytes(file.toPath());
+            char[] text = Helper.decode(content, encoding);
+            return new Reader(entry,
+                    new ANTLRStringStream(text, text.length))
+                    .readParsedFile();
+        }
+        catch (Exception e) {
+            //a corrupt or incompatible entry
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Cache the result of parsing the given source text.
+     * Must be called before the tree is modified by any
+     * type checking phase.
+     */
+    void put(byte[] content, String encoding,
+            ParsedFile parsedFile) {
+        if (parsedFile.compilationUnit.containsErrorOrWarning()) {
+            return;
+        }
+        File file = entry(content, encoding);
+        if (file==null || file.isFile()) {
+            return;
+        }
+        File temp = null;
+        try {
+            char[] text = Helper.decode(content, encoding);
+            Writer writer = new Writer(
+                    new ANTLRStringStream(text, text.length));
+            writer.writeParsedFile(parsedFile);
+            temp = File.createTempFile("parse", ".tmp", directory);
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(writer.bytes, 0, writer.size);
+            }
+            finally {
+                out.close();
+            }
+            if (temp.renameTo(file)) {
+                temp = null;
+            }
+        }
+        catch (Exception e) {
+            //ignore, it's just a cache
+        }
+        finally {
+            if (temp!=null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private File entry(byte[] content, String encoding) {
+        byte[] version = getGrammarVersion();
+        if (version==null) {
+            return null;
+        }
+        try {
+            MessageDigest digest =
+                    MessageDigest.getInstance("SHA-1");
+            digest.update(version);
+            digest.update(encoding.getBytes("UTF-8"));
+            digest.update((byte) 0);
+            digest.update(content);
+            StringBuilder name = new StringBuilder();
+            for (byte b: digest.digest()) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(directory,
+                    name.append(".ast").toString());
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * A digest of the generated lexer and parser classes,
+     * which determine the trees, and of the version of 
+     * the node declarations, so that entries written by a
+     * different grammar are never read back. A class 
+     * compiled again, without any change, only costs a
+     * cache miss.
+     */
+    private static synchronized byte[] getGrammarVersion() {
+        if (grammarVersion==null) {
+            try {
+                MessageDigest digest =
+                        MessageDigest.getInstance("SHA-1");
+                digest.update((byte) FORMAT_VERSION);
+                int version = TreeSerializer.VERSION;
+                digest.update(new byte[] { 
+                        (byte) (version >>> 24), 
+                        (byte) (version >>> 16), 
+                        (byte) (version >>> 8), 
+                        (byte) version });
+                for (Class<?> c: new Class<?>[] {
+                        CeylonLexer.class, CeylonParser.class }) {
+                    InputStream in =
+                            c.getResourceAsStream(
+                                c.getSimpleName() + ".class");
+                    if (in==null) {
+                        return null;
+                    }
+                    try {
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = in.read(buffer))>=0) {
+                            digest.update(buffer, 0, read);
+                        }
+                    }
+                    finally {
+                        in.close();
+                    }
+                }
+                grammarVersion = digest.digest();
+            }
+            catch (Exception e) {
+                return null;
+            }
+        }
+        return grammarVersion;
+    }
+
+    /**
+     * Writes an entry to an array, rather than to a
+     * stream, whose methods are synchronized.
+     */
+    private static final class Writer implements NodeOutput {
+
+        private final CharStream input;
+        private final Map<Token,Integer> tokenIndexes =
+                new IdentityHashMap<Token,Integer>();
+        byte[] bytes = new byte[8192];
+        int size;
+
+        Writer(CharStream input) {
+            this.input = input;
+        }
+
+        void writeParsedFile(ParsedFile parsedFile)
+                throws IOException {
+            List<CommonToken> tokens = parsedFile.tokens;
+            writeInt(FORMAT_VERSION);
+            writeInt(tokens.size());
+            for (CommonToken token: tokens) {
+                tokenIndexes.put(token, tokenIndexes.size());
+                writeTokenFields(token);
+            }
+            TreeSerializer.write(this, 
+                    parsedFile.compilationUnit);
+        }
+
+        /**
+         * Write the index of a token of the stream, or of
+         * a token already written, or else the next index,
+         * followed by the new token.
+         */
+        @Override
+        public void writeToken(Token token) throws IOException {
+            if (token==null) {
+                writeInt(NULL);
+                return;
+            }
+            Integer index = tokenIndexes.get(token);
+            if (index!=null) {
+                writeInt(index);
+            }
+            else {
+                index = tokenIndexes.size();
+                tokenIndexes.put(token, index);
+                writeInt(index);
+                writeTokenFields(token);
+            }
+        }
+
+        private void writeTokenFields(Token token)
+                throws IOException {
+            int kind;
+            if (token.getClass()==CommonToken.class) {
+                kind = COMMON_TOKEN;
+            }
+            else if (token.getClass()==MissingToken.class) {
+                kind = MISSING_TOKEN;
+            }
+            else {
+                throw new IOException("unexpected token class: " + 
+                        token.getClass().getName());
+            }
+            CommonToken ct = (CommonToken) token;
+            writeInt(kind);
+            writeInt(ct.getType());
+            writeInt(ct.getChannel());
+            writeInt(ct.getStartIndex());
+            writeInt(ct.getStopIndex());
+            writeInt(ct.getLine());
+            writeInt(ct.getCharPositionInLine());
+            writeInt(ct.getTokenIndex());
+            String text = ct.getText();
+            String impliedText = kind==COMMON_TOKEN ?
+                    new CommonToken(input, ct.getType(),
+                            ct.getChannel(),
+                            ct.getStartIndex(),
+                            ct.getStopIndex())
+                        .getText() :
+                    null;
+            writeString(text==null || text.equals(impliedText) ? 
+                    null : text);
+        }
+
+        @Override
+        public void writeBoolean(boolean value) throws IOException {
+            writeByte(value ? 1 : 0);
+        }
+
+        @Override
+        public void writeString(String value) throws IOException {
+            if (value==null) {
+                writeBoolean(false);
+            }
+            else {
+                writeBoolean(true);
+                byte[] utf8 = value.getBytes("UTF-8");
+                writeInt(utf8.length);
+                for (byte b: utf8) {
+                    writeByte(b);
+                }
+            }
+        }
+
+        @Override
+        public void writeInt(int value) throws IOException {
+            //zigzag varint, since NULL is -1
+            int v = (value << 1) ^ (value >> 31);
+            while ((v & ~0x7F)!=0) {
+                writeByte((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            writeByte(v);
+        }
+
+        private void writeByte(int b) {
+            if (size==bytes.length) {
+                bytes = Arrays.copyOf(bytes, size*2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+    }
+
+    private static final class Reader implements NodeInput {
+
+        private final byte[] bytes;
+        private int position;
+        private final CharStream input;
+        private final List<Token> tokens = new ArrayList<Token>();
+
+        Reader(byte[] bytes, CharStream input) {
+            this.bytes = bytes;
+            this.input = input;
+        }
+
+        ParsedFile readParsedFile() throws IOException {
+            if (readInt()!=FORMAT_VERSION) {
+                throw new IOException("unknown format");
+            }
+            int streamSize = readInt();
+            List<CommonToken> stream =
+                    new ArrayList<CommonToken>(streamSize);
+            for (int i=0; i<streamSize; i++) {
+                CommonToken token = readTokenFields();
+                tokens.add(token);
+                stream.add(token);
+            }
+            Tree.CompilationUnit cu =
+                    (Tree.CompilationUnit) 
+                        TreeSerializer.read(this);
+            cu.connectWalkedParents();
+            return new ParsedFile(cu, stream);
+        }
+
+        @Override
+        public Token readToken() throws IOException {
+            int index = readInt();
+            if (index==NULL) {
+                return null;
+            }
+            else if (index<tokens.size()) {
+                return tokens.get(index);
+            }
+            else if (index==tokens.size()) {
+                Token token = readTokenFields();
+                tokens.add(token);
+                return token;
+            }
+            else {
+                throw new IOException("bad token index");
+            }
+        }
+
+        private CommonToken readTokenFields() throws IOException {
+            int kind = readInt();
+            int type = readInt();
+            int channel = readInt();
+            int start = readInt();
+            int stop = readInt();
+            int line = readInt();
+            int charPositionInLine = readInt();
+            int tokenIndex = readInt();
+            String text = readString();
+            CommonToken token;
+            if (kind==MISSING_TOKEN) {
+                token = new MissingToken(type, text);
+                token.setChannel(channel);
+                token.setStartIndex(start);
+                token.setStopIndex(stop);
+                token.setInputStream(input);
+            }
+            else {
+                token = new CommonToken(input, type, channel,
+                        start, stop);
+                if (text!=null) {
+                    token.setText(text);
+                }
+            }
+            token.setLine(line);
+            token.setCharPositionInLine(charPositionInLine);
+            token.setTokenIndex(tokenIndex);
+            return token;
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return readByte()!=0;
+        }
+
+        @Override
+        public String readString() throws IOException {
+            if (!readBoolean()) {
+                return null;
+            }
+            int length = readInt();
+            if (length<0 || position+length>bytes.length) {
+                throw new IOException("truncated entry");
+            }
+            String string = 
+                    new String(bytes, position, length, "UTF-8");
+            position += length;
+            return string;
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            int v = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = readByte();
+                v |= (b & 0x7F) << shift;
+                shift += 7;
+            }
+            while ((b & 0x80)!=0);
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        private int readByte() throws IOException {
+            if (position==bytes.length) {
+                throw new IOException("truncated entry");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+    }
+
+}
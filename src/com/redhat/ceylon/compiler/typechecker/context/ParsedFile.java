@@ -0,0 +1,24 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+import java.util.List;
+
+import org.antlr.runtime.CommonToken;
+
+import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+
+/**
+ * The result of lexing and parsing a source file, 
+ * before it becomes a {@link PhasedUnit}.
+ */
+final class ParsedFile {
+    
+    final Tree.CompilationUnit compilationUnit;
+    final List<CommonToken> tokens;
+    
+    ParsedFile(Tree.CompilationUnit compilationUnit, 
+            List<CommonToken> tokens) {
+        this.compilationUnit = compilationUnit;
+        this.tokens = tokens;
+    }
+    
+}
@@ -0,0 +1,75 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+/**
+ * The type checking phases run over every
+ * {@link PhasedUnit}, in order. Each phase must have
+ * completed for every unit before the next phase
+ * starts for any unit.
+ *
+ * Every phase runs for one unit at a time, since none
+ * changes only the state of its own unit: scanning 
+ * declarations adds members to the shared package 
+ * model, the {@code TypeVisitor} replaces the satisfied
+ * types of classes and interfaces which other units
+ * read, the {@code ExpressionVisitor} infers types which
+ * other units read, and flow analysis records the 
+ * unimplemented formal members of shared classes. Even
+ * usage analysis, which only reads the model, may fill
+ * the caches of model objects, which are not thread 
+ * safe.
+ *
+ * @see com.redhat.ceylon.compiler.typechecker.TypeChecker#process()
+ */
+public enum Phase {
+
+    VALIDATE_TREE {
+        @Override
+        public void run(PhasedUnit pu) {
+            pu.validateTree();
+        }
+    },
+    SCAN_DECLARATIONS {
+        @Override
+        public void run(PhasedUnit pu) {
+            pu.scanDeclarations();
+        }
+    },
+    SCAN_TYPE_DECLARATIONS {
+        @Override
+        public void run(PhasedUnit pu) {
+            pu.scanTypeDeclarations();
+        }
+    },
+    VALIDATE_REFINEMENT {
+        @Override
+        public void run(PhasedUnit pu) {
+            pu.validateRefinement();
+        }
+    },
+    ANALYSE_TYPES {
+        @Override
+        public void run(PhasedUnit pu) {
+            pu.analyseTypes();
+        }
+    },
+    ANALYSE_FLOW {
+        @Override
+        public void run(PhasedUnit pu) {
+            pu.analyseFlow();
+        }
+    },
+    ANALYSE_USAGE {
+        @Override
+        public void run(PhasedUnit pu) {
+            pu.analyseUsage();
+        }
+    };
+    
+    /**
+     * Run this phase for the given unit. Phases are
+     * idempotent: a phase that has already run for the
+     * unit does nothing.
+     */
+    public abstract void run(PhasedUnit pu);
+
+}
@@ -0,0 +1,68 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
+
+/**
+ * Notified of the time taken, and the memory allocated,
+ * by each {@link Phase} for each {@link PhasedUnit}, and
+ * by each visitor run within the phase, and of the time
+ * taken to lex and parse each source file. Only work that is
+ * actually done is reported: running a phase which has
+ * already completed for a unit does not notify the
+ * listener.
+ * 
+ * A listener is called on the thread which did the work,
+ * so it must be thread safe if units are processed
+ * concurrently. The visitors run for a phase are reported
+ * before the phase itself.
+ *
+ * @see com.redhat.ceylon.compiler.typechecker.TypeCheckerBuilder#phaseListener(PhaseListener)
+ * @see com.redhat.ceylon.compiler.typechecker.util.PhaseProfiler
+ */
+public interface PhaseListener {
+
+    /**
+     * A visitor was run over the given unit.
+     * 
+     * @param start the value of {@link System#nanoTime()} 
+     *        when the visitor started
+     * @param nanos the elapsed time
+     * @param allocatedBytes the memory allocated by the 
+     *        current thread, or -1 if the VM does not 
+     *        support measuring it
+     */
+    void visitorCompleted(PhasedUnit unit, Phase phase, 
+            Visitor visitor, 
+            long start, long nanos, long allocatedBytes);
+
+    /**
+     * A phase was run for the given unit.
+     * 
+     * @param start the value of {@link System#nanoTime()} 
+     *        when the phase started
+     * @param nanos the elapsed time
+     * @param allocatedBytes the memory allocated by the 
+     *        current thread, or -1 if the VM does not 
+     *        support measuring it
+     */
+    void phaseCompleted(PhasedUnit unit, Phase phase, 
+            long start, long nanos, long allocatedBytes);
+
+    /**
+     * The given source file was lexed and parsed, or its
+     * tree was read from the parse cache. This happens
+     * before the unit of the file exists, and, when files
+     * are parsed concurrently, on a worker thread.
+     * 
+     * @param start the value of {@link System#nanoTime()} 
+     *        when parsing started
+     * @param nanos the elapsed time
+     * @param allocatedBytes the memory allocated by the 
+     *        current thread, or -1 if the VM does not 
+     *        support measuring it
+     */
+    void fileParsed(VirtualFile file, 
+            long start, long nanos, long allocatedBytes);
+
+}
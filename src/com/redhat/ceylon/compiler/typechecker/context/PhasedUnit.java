@@ -3,8 +3,10 @@ package com.redhat.ceylon.compiler.typechecker.context;
 import static com.redhat.ceylon.compiler.typechecker.tree.TreeUtil.formatPath;
 
 import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import org.antlr.runtime.CommonToken;
 
@@ -14,6 +16,7 @@ import com.redhat.ceylon.compiler.typechecker.analyzer.ControlFlowVisitor;
 import com.redhat.ceylon.compiler.typechecker.analyzer.DeclarationVisitor;
 import com.redhat.ceylon.compiler.typechecker.analyzer.DefaultTypeArgVisitor;
 import com.redhat.ceylon.compiler.typechecker.analyzer.ExpressionVisitor;
+import com.redhat.ceylon.compiler.typechecker.analyzer.FlowAnalysisIndex;
 import com.redhat.ceylon.compiler.typechecker.analyzer.ImportVisitor;
 import com.redhat.ceylon.compiler.typechecker.analyzer.InheritanceVisitor;
 import com.redhat.ceylon.compiler.typechecker.analyzer.LiteralVisitor;
@@ -31,6 +34,10 @@ import com.redhat.ceylon.compiler.typechecker.analyzer.VisibilityVisitor;
 import com.redhat.ceylon.compiler.typechecker.analyzer.Warning;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
 import com.redhat.ceylon.compiler.typechecker.io.impl.Helper;
+import com.redhat.ceylon.compiler.typechecker.parser.RecognitionError;
+import com.redhat.ceylon.compiler.typechecker.tree.FusedVisitor;
+import com.redhat.ceylon.compiler.typechecker.tree.Message;
+import com.redhat.ceylon.compiler.typechecker.tree.NodeIndex;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.ImportPath;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.ModuleDescriptor;
@@ -41,6 +48,7 @@ import com.redhat.ceylon.compiler.typechecker.util.DeprecationVisitor;
 import com.redhat.ceylon.compiler.typechecker.util.PrintVisitor;
 import com.redhat.ceylon.compiler.typechecker.util.ReferenceCounter;
 import com.redhat.ceylon.compiler.typechecker.util.StatisticsVisitor;
+import com.redhat.ceylon.compiler.typechecker.util.UnitDependencyVisitor;
 import com.redhat.ceylon.compiler.typechecker.util.UsageVisitor;
 import com.redhat.ceylon.model.typechecker.context.TypeCache;
 import com.redhat.ceylon.model.typechecker.model.Declaration;
@@ -68,6 +76,7 @@ public class PhasedUnit {
     private final String pathRelativeToSrcDir;
     private VirtualFile unitFile;
     private List<CommonToken> tokens;
+    private NodeIndex nodeIndex;
     private ModuleVisitor moduleVisitor;
     private Tree.ModuleDescriptor moduleDescriptor;
     private VirtualFile srcDir;
@@ -81,8 +90,13 @@ public class PhasedUnit {
     private boolean usageAnalyzed = false;
     private boolean literalsProcessed = false;
     private boolean moduleVisited = false;
+    private boolean unresolvedReferences = false;
     private EnumSet<Warning> suppressedWarnings = 
             EnumSet.noneOf(Warning.class);
+    private TypeHierarchyVisitor.Cache typeHierarchyCache;
+    private PhaseListener phaseListener;
+    private DiagnosticListener diagnosticListener;
+    private boolean pruneFlowAnalysis;
     
     public VirtualFile getSrcDir() {
         return srcDir;
@@ -109,7 +123,19 @@ public class PhasedUnit {
         this.moduleManagerUtilRef = 
                 new WeakReference<ModuleSourceMapper>
                     (moduleManagerUtil);
-        this.tokens = tokenStream;
+        this.tokens = tokenStream==null ? 
+                Collections.<CommonToken>emptyList() : 
+                tokenStream;
+        if (context!=null) {
+            this.typeHierarchyCache = 
+                    context.getTypeHierarchyCache();
+            this.phaseListener = 
+                    context.getPhaseListener();
+            this.diagnosticListener = 
+                    context.getDiagnosticListener();
+            this.pruneFlowAnalysis = 
+                    context.isPruneFlowAnalysis();
+        }
         unit = createUnit();
         unit.setFilename(fileName);
         unit.setFullPath(unitFile.getPath());
@@ -119,6 +145,14 @@ public class PhasedUnit {
         pkg.removeUnit(unit);
         pkg.addUnit(unit);
         rootNode.setUnit(unit);
+        if (diagnosticListener!=null) {
+            //the lexer and parser errors were attached to
+            //the root node before there was a unit
+            for (Message error: rootNode.getErrors()) {
+                diagnosticListener.messageAdded(this, null, 
+                        rootNode, error);
+            }
+        }
     }
 
     public PhasedUnit(PhasedUnit other) {
@@ -145,6 +179,11 @@ public class PhasedUnit {
         this.refinementValidated = other.refinementValidated;
         this.fullyTyped = other.fullyTyped;
         this.flowAnalyzed = other.flowAnalyzed;
+        this.unresolvedReferences = other.unresolvedReferences;
+        this.typeHierarchyCache = other.typeHierarchyCache;
+        this.phaseListener = other.phaseListener;
+        this.diagnosticListener = other.diagnosticListener;
+        this.pruneFlowAnalysis = other.pruneFlowAnalysis;
     }
 
     protected boolean shouldIgnoreOverload(Declaration overload,
@@ -157,7 +196,8 @@ public class PhasedUnit {
     }
 
     public ModuleDescriptor findModuleDescriptor() {
-        if (ModuleManager.MODULE_FILE.equals(fileName)) {
+        if (rootNode!=null && 
+                ModuleManager.MODULE_FILE.equals(fileName)) {
             rootNode.visit(new Visitor() {
                 @Override
                 public void visit(ModuleDescriptor that) {
@@ -178,7 +218,7 @@ public class PhasedUnit {
                         new ModuleVisitor(moduleManagerRef.get(), moduleManagerUtilRef.get(), 
                                 pkg);
                 moduleVisitor.setCompleteOnlyAST(!isAllowedToChangeModel(null));
-                rootNode.visit(moduleVisitor);
+                visitModule();
                 return moduleVisitor.getMainModule();
             }
         }
@@ -192,11 +232,27 @@ public class PhasedUnit {
     public void visitRemainingModulePhase() {
         if ( moduleVisitor != null ) {
             moduleVisitor.setPhase(ModuleVisitor.Phase.REMAINING);
-            rootNode.visit(moduleVisitor);
+            visitModule();
             moduleVisitor = null;
         }
     }
     
+    /**
+     * Did the lexer or parser find errors in this unit?
+     * Always false once the tree has been released.
+     */
+    public boolean hasSyntaxErrors() {
+        if (rootNode==null) {
+            return false;
+        }
+        for (Message error: rootNode.getErrors()) {
+            if (error instanceof RecognitionError) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     public boolean isFullyTyped() {
         return fullyTyped;
     }
@@ -248,44 +304,17 @@ public class PhasedUnit {
     public void validateTree() {
         //System.out.println("Validating tree for " + fileName);
         if (!treeValidated) {
-            String fn = unit.getRelativePath();
-            for (int i=0; 
-                    i<fn.length(); 
-                    i = fn.offsetByCodePoints(i, 1)) {
-                int cp = fn.codePointAt(i);
-                if (cp>127) {
-                    rootNode.addUsageWarning(
-                            Warning.filenameNonAscii,
-                            "source file name has non-ASCII characters: " + 
-                            fn);
-                }
+            Stopwatch stopwatch = startPhase();
+            DiagnosticScope scope = 
+                    enterScope(Phase.VALIDATE_TREE);
+            try {
+                checkFileName();
             }
-            String ufn = unit.getFilename();
-            for (Unit u: unit.getPackage().getUnits()) {
-                if (!u.equals(unit) && 
-                        u.getFilename().equalsIgnoreCase(ufn)) {
-                    if (u.getFilename().equals(ufn)) {
-                        String errorMessage = 
-                                "identical source files: " +
-                                unit.getFullPath() + " and " + 
-                                u.getFullPath();
-                        if (u.getFilename().equals(ModuleManager.MODULE_FILE) ||
-                            u.getFilename().equals(ModuleManager.PACKAGE_FILE)) {
-                            errorMessage += " (a module/package descriptor should be defined only once, even in case of multiple source directories)";
-                        }
-                        rootNode.addError(errorMessage);                        
-                    }
-                    else {
-                        rootNode.addUsageWarning(
-                                Warning.filenameCaselessCollision,
-                                "source file names differ only by case: " +
-                                unit.getFullPath() + " and " + 
-                                u.getFullPath());
-                    }
-                }
+            finally {
+                exitScope(scope);
             }
-            rootNode.visit(new Validator());
-            rootNode.visit(new Visitor() {
+            visit(Phase.VALIDATE_TREE, new Validator());
+            visit(Phase.VALIDATE_TREE, new Visitor() {
                 @Override
                 public void visit(ModuleDescriptor that) {
                     super.visit(that);
@@ -318,6 +347,50 @@ public class PhasedUnit {
                 }
             });
             treeValidated = true;
+            phaseCompleted(Phase.VALIDATE_TREE, stopwatch);
+        }
+    }
+
+    /**
+     * Warn about non-ASCII source file names, and about
+     * source files whose names clash.
+     */
+    private void checkFileName() {
+        String fn = unit.getRelativePath();
+        for (int i=0; 
+                i<fn.length(); 
+                i = fn.offsetByCodePoints(i, 1)) {
+            int cp = fn.codePointAt(i);
+            if (cp>127) {
+                rootNode.addUsageWarning(
+                        Warning.filenameNonAscii,
+                        "source file name has non-ASCII characters: " + 
+                        fn);
+            }
+        }
+        String ufn = unit.getFilename();
+        for (Unit u: unit.getPackage().getUnits()) {
+            if (!u.equals(unit) && 
+                    u.getFilename().equalsIgnoreCase(ufn)) {
+                if (u.getFilename().equals(ufn)) {
+                    String errorMessage = 
+                            "identical source files: " +
+                            unit.getFullPath() + " and " + 
+                            u.getFullPath();
+                    if (u.getFilename().equals(ModuleManager.MODULE_FILE) ||
+                        u.getFilename().equals(ModuleManager.PACKAGE_FILE)) {
+                        errorMessage += " (a module/package descriptor should be defined only once, even in case of multiple source directories)";
+                    }
+                    rootNode.addError(errorMessage);                        
+                }
+                else {
+                    rootNode.addUsageWarning(
+                            Warning.filenameCaselessCollision,
+                            "source file names differ only by case: " +
+                            unit.getFullPath() + " and " + 
+                            u.getFullPath());
+                }
+            }
         }
     }
 
@@ -326,17 +399,20 @@ public class PhasedUnit {
                 TypeCache.setEnabled(false);
         try {
             if (!declarationsScanned) {
+                Stopwatch stopwatch = startPhase();
                 processLiterals();
                 scanningDeclarations = true;
                 //System.out.println("Scan declarations for " + fileName);
                 DeclarationVisitor dv = createDeclarationVisitor();
-                rootNode.visit(dv);
+                visit(Phase.SCAN_DECLARATIONS, dv);
                 unit = dv.getCompilationUnit();
 
-                rootNode.visit(new LocalDeclarationVisitor());
+                visit(Phase.SCAN_DECLARATIONS, 
+                        new LocalDeclarationVisitor());
 
                 declarationsScanned = true;
                 scanningDeclarations = false;
+                phaseCompleted(Phase.SCAN_DECLARATIONS, stopwatch);
             }
         }
         finally {
@@ -366,7 +442,7 @@ public class PhasedUnit {
 
     private void processLiterals() {
 		if (!literalsProcessed) {
-			rootNode.visit(new LiteralVisitor());
+			visit(Phase.SCAN_DECLARATIONS, new LiteralVisitor());
 			literalsProcessed = true;
 		}
 	}
@@ -376,12 +452,15 @@ public class PhasedUnit {
                 TypeCache.setEnabled(false);
         try {
             if (!typeDeclarationsScanned) {
+                Stopwatch stopwatch = startPhase();
                 //System.out.println("Scan type declarations for " + fileName);
-                rootNode.visit(new ImportVisitor());
-                rootNode.visit(new DefaultTypeArgVisitor());
-                rootNode.visit(new SupertypeVisitor(false)); //TODO: move to a new phase!
-                rootNode.visit(new TypeVisitor());
+                Phase phase = Phase.SCAN_TYPE_DECLARATIONS;
+                visit(phase, new ImportVisitor());
+                visit(phase, new DefaultTypeArgVisitor());
+                visit(phase, new SupertypeVisitor(false)); //TODO: move to a new phase!
+                visit(phase, new TypeVisitor());
                 typeDeclarationsScanned = true;
+                phaseCompleted(phase, stopwatch);
             }
         }
         finally {
@@ -394,13 +473,16 @@ public class PhasedUnit {
                 TypeCache.setEnabled(false);
         try {
             if (!refinementValidated) {
+                Stopwatch stopwatch = startPhase();
                 Type.resetDepth(0);
                 //System.out.println("Validate member refinement for " + fileName);
-                rootNode.visit(new AliasVisitor());
-                rootNode.visit(new SupertypeVisitor(true)); //TODO: move to a new phase!
-                rootNode.visit(new InheritanceVisitor());
-                rootNode.visit(new RefinementVisitor());
+                Phase phase = Phase.VALIDATE_REFINEMENT;
+                visit(phase, new AliasVisitor());
+                visit(phase, new SupertypeVisitor(true)); //TODO: move to a new phase!
+                visit(phase, new InheritanceVisitor());
+                visit(phase, new RefinementVisitor());
                 refinementValidated = true;
+                phaseCompleted(phase, stopwatch);
             }
         }
         finally {
@@ -410,44 +492,136 @@ public class PhasedUnit {
 
     public synchronized void analyseTypes() {
         if (!fullyTyped) {
+            Stopwatch stopwatch = startPhase();
             Type.resetDepth(-100);
             //System.out.println("Run analysis phase for " + fileName);
-            rootNode.visit(new ExpressionVisitor());
-            rootNode.visit(new VisibilityVisitor());
-            rootNode.visit(new AnnotationVisitor());
-            rootNode.visit(new TypeArgumentVisitor());
+            Phase phase = Phase.ANALYSE_TYPES;
+            visit(phase, new ExpressionVisitor());
+            //these only read the types assigned above
+            visit(phase, new FusedVisitor(
+                    new VisibilityVisitor(),
+                    new AnnotationVisitor(),
+                    new TypeArgumentVisitor(),
+                    new UnitDependencyVisitor(unit)));
             fullyTyped = true;
+            phaseCompleted(phase, stopwatch);
         }
     }
     
     public synchronized void analyseFlow() {
         if (!flowAnalyzed) {
-            rootNode.visit(new TypeHierarchyVisitor());
+            Stopwatch stopwatch = startPhase();
+            Phase phase = Phase.ANALYSE_FLOW;
+            visit(phase, typeHierarchyCache==null ? 
+                    new TypeHierarchyVisitor() : 
+                    new TypeHierarchyVisitor(typeHierarchyCache));
             //System.out.println("Validate control flow for " + fileName);
-            rootNode.visit(new ControlFlowVisitor());
+            visit(phase, new ControlFlowVisitor());
             //System.out.println("Validate self references for " + fileName);
             //System.out.println("Validate specification for " + fileName);
+            //a null index means no pruning
+            FlowAnalysisIndex index = null;
+            if (pruneFlowAnalysis) {
+                index = new FlowAnalysisIndex();
+                visit(phase, index);
+            }
             for (Declaration d: unit.getDeclarations()) {
                 if (d.getName()!=null) {
-                    rootNode.visit(new SpecificationVisitor(d));
+                    visit(phase, new SpecificationVisitor(d, index));
                     if (d instanceof TypeDeclaration) {
                         TypeDeclaration td = 
                                 (TypeDeclaration) d;
-                        rootNode.visit(new SelfReferenceVisitor(td));
+                        visit(phase, new SelfReferenceVisitor(td, index));
                     }
                 }
             }
             flowAnalyzed = true;
+            phaseCompleted(phase, stopwatch);
         }
     }
 
     public synchronized void analyseUsage() {
         if (! usageAnalyzed) {
+            Stopwatch stopwatch = startPhase();
+            Phase phase = Phase.ANALYSE_USAGE;
             ReferenceCounter rc = new ReferenceCounter();
-            rootNode.visit(rc);
-            rootNode.visit(new UsageVisitor(rc));
-            rootNode.visit(new DeprecationVisitor());
+            visit(phase, rc);
+            visit(phase, new FusedVisitor(
+                    new UsageVisitor(rc),
+                    new DeprecationVisitor()));
             usageAnalyzed = true;
+            phaseCompleted(phase, stopwatch);
+        }
+    }
+
+    /**
+     * Run the given visitor of the given phase, reporting
+     * it to the {@link PhaseListener}, and the messages it
+     * adds to the {@link DiagnosticListener}, if any.
+     */
+    private void visit(Phase phase, Visitor visitor) {
+        DiagnosticScope scope = enterScope(phase);
+        try {
+            if (phaseListener==null) {
+                rootNode.visit(visitor);
+            }
+            else {
+                Stopwatch stopwatch = new Stopwatch();
+                rootNode.visit(visitor);
+                phaseListener.visitorCompleted(this, phase, visitor, 
+                        stopwatch.start, stopwatch.nanos(), 
+                        stopwatch.allocatedBytes());
+            }
+        }
+        finally {
+            exitScope(scope);
+        }
+    }
+
+    private void visitModule() {
+        checkTreeRetained();
+        DiagnosticScope scope = enterScope(null);
+        try {
+            rootNode.visit(moduleVisitor);
+        }
+        finally {
+            exitScope(scope);
+        }
+    }
+
+    private DiagnosticScope enterScope(Phase phase) {
+        return diagnosticListener==null ? null : 
+            DiagnosticScope.enter(diagnosticListener, this, phase);
+    }
+
+    private static void exitScope(DiagnosticScope scope) {
+        if (scope!=null) {
+            scope.exit();
+        }
+    }
+
+    private Stopwatch startPhase() {
+        checkTreeRetained();
+        return phaseListener==null ? null : new Stopwatch();
+    }
+
+    /**
+     * A phase which has not yet run for this unit can't
+     * run once its tree has been released.
+     */
+    private void checkTreeRetained() {
+        if (rootNode==null) {
+            throw new IllegalStateException(
+                    "the tree of " + unitFile.getPath() + 
+                    " has been released");
+        }
+    }
+
+    private void phaseCompleted(Phase phase, Stopwatch stopwatch) {
+        if (stopwatch!=null) {
+            phaseListener.phaseCompleted(this, phase, 
+                    stopwatch.start, stopwatch.nanos(), 
+                    stopwatch.allocatedBytes());
         }
     }
 
@@ -503,9 +677,75 @@ public class PhasedUnit {
         return rootNode;
     }
 
+    /**
+     * The token stream of the source file, including
+     * whitespace and comments. The list may be read-only,
+     * and its tokens may not be the same objects as the
+     * tokens of the nodes, though they are equal in every
+     * field. Empty unless the
+     * {@linkplain Context#isRetainTokens() tokens are 
+     * retained}, and once the tree has been
+     * {@linkplain #releaseTree() released}. Never null.
+     */
     public List<CommonToken> getTokens() {
         return tokens;
     }
+    
+    /**
+     * An index of the nodes of the tree by offset, built
+     * the first time it is requested, for looking up the
+     * node or scope at a given offset. It reflects the
+     * tree as it was then, so it should be requested once
+     * the phases which change the tree have run. Null if
+     * the tree has been {@linkplain #releaseTree() 
+     * released}.
+     */
+    public synchronized NodeIndex getNodeIndex() {
+        if (nodeIndex==null && rootNode!=null) {
+            nodeIndex = new NodeIndex(rootNode);
+        }
+        return nodeIndex;
+    }
+    
+    /**
+     * Discard the tree and the tokens of this unit, 
+     * keeping only its model. After this,
+     * {@link #getCompilationUnit()} returns null,
+     * {@link #getTokens()} returns an empty list, the errors 
+     * attached to the tree are gone, except for errors
+     * which are still referenced from elsewhere, which 
+     * keep their part of the tree alive, and the 
+     * {@linkplain TypecheckerUnit#getUnresolvedReferences()
+     * unresolved references} of the unit are forgotten.
+     * A phase which had not run for the unit by then
+     * throws {@link IllegalStateException}.
+     */
+    public void releaseTree() {
+        if (rootNode!=null) {
+            Set<Tree.Identifier> references = 
+                    unit.getUnresolvedReferences();
+            unresolvedReferences = !references.isEmpty();
+            references.clear();
+        }
+        rootNode = null;
+        tokens = Collections.<CommonToken>emptyList();
+        nodeIndex = null;
+        moduleVisitor = null;
+    }
+    
+    public boolean isTreeReleased() {
+        return rootNode==null;
+    }
+    
+    /**
+     * Does this unit refer to declarations which could not
+     * be found? Still known once the tree has been
+     * released.
+     */
+    public boolean hasUnresolvedReferences() {
+        return unresolvedReferences || 
+                !unit.getUnresolvedReferences().isEmpty();
+    }
 
     public boolean isScanningDeclarations() {
         return scanningDeclarations;
@@ -1,21 +1,37 @@
 package com.redhat.ceylon.compiler.typechecker.context;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.antlr.runtime.ANTLRInputStream;
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CharStream;
 import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.CommonTokenStream;
 
 import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleSourceMapper;
+import com.redhat.ceylon.compiler.typechecker.io.ContentVirtualFile;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
+import com.redhat.ceylon.compiler.typechecker.io.impl.Helper;
 import com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer;
 import com.redhat.ceylon.compiler.typechecker.parser.CeylonParser;
 import com.redhat.ceylon.compiler.typechecker.parser.LexError;
 import com.redhat.ceylon.compiler.typechecker.parser.ParseError;
+import com.redhat.ceylon.compiler.typechecker.tree.IterativeWalker;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
 import com.redhat.ceylon.compiler.typechecker.util.ModuleManagerFactory;
 import com.redhat.ceylon.model.typechecker.model.Module;
 import com.redhat.ceylon.model.typechecker.model.Modules;
@@ -34,6 +50,14 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
     private List<String> moduleFilters;
     private Set<VirtualFile> sourceFiles  = new HashSet<VirtualFile>();
     private String encoding;
+    private ForkJoinPool forkJoinPool;
+    /**
+     * The files submitted for concurrent parsing by the
+     * innermost call to {@link #parseUnit(VirtualFile, VirtualFile)},
+     * or null outside of it.
+     */
+    private List<PendingUnit> pendingUnits;
+    private Preparsed preparsed;
 
     public PhasedUnits(Context context) {
         this.context = context;
@@ -70,6 +94,27 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
         this.moduleFilters = moduleFilters;
     }
     
+    /**
+     * Parse source files concurrently using the given 
+     * pool. The directory hierarchy is still traversed
+     * sequentially, and the resulting units are 
+     * registered in the order in which the files were
+     * found.
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+    
+    /**
+     * Use the given files, parsed ahead of time by
+     * {@link #preparse(Context, VirtualFile, String)},
+     * instead of parsing them again, if they were parsed
+     * with the encoding of these units.
+     */
+    public void setPreparsed(Preparsed preparsed) {
+        this.preparsed = preparsed;
+    }
+    
     public ModuleManager getModuleManager() {
         return moduleManager;
     }
@@ -89,6 +134,11 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
     }
 
     public void parseUnit(VirtualFile file, VirtualFile srcDir) {
+        //each call waits for its own files, even if it is
+        //made while another call is still in progress
+        List<PendingUnit> outerPendingUnits = pendingUnits;
+        List<PendingUnit> pending = new ArrayList<PendingUnit>();
+        pendingUnits = pending;
         try {
             if (file.isFolder()) {
                 //root directory is the src dir => start from here
@@ -102,6 +152,8 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
                 //TODO is that really valid?
                 parseFileOrDirectory(file, srcDir);
             }
+            pendingUnits = outerPendingUnits;
+            addPendingUnits(pending);
         }
         catch (RuntimeException e) {
             //let it go
@@ -110,37 +162,249 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
         catch (Exception e) {
             throw new RuntimeException("Error while parsing the source directory: " + file.toString(), e);
         }
+        finally {
+            pendingUnits = outerPendingUnits;
+        }
+    }
+
+    /**
+     * Parse a single source file belonging to the given
+     * package, replacing any unit already registered for
+     * the file.
+     * 
+     * @return the new unit
+     */
+    public PhasedUnit parseUnit(VirtualFile file, VirtualFile srcDir, Package pkg) {
+        try {
+            addPhasedUnit(file, srcDir, pkg, parse(file));
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Error while parsing the source file: " + file.toString(), e);
+        }
+        return getPhasedUnit(file);
     }
 
     protected void parseFile(VirtualFile file, VirtualFile srcDir) throws Exception {
         if (file.getName().endsWith(".ceylon") && (sourceFiles.isEmpty() || sourceFiles.contains(file))) {
-
-            //System.out.println("Parsing " + file.getName());
-            CeylonLexer lexer = new CeylonLexer(new ANTLRInputStream(file.getInputStream(), getEncoding()));
-            CommonTokenStream tokenStream = new CommonTokenStream(lexer);
-            CeylonParser parser = new CeylonParser(tokenStream);
-            Tree.CompilationUnit cu = parser.compilationUnit();
-            List<CommonToken> tokens = new ArrayList<CommonToken>(tokenStream.getTokens().size()); 
-            tokens.addAll(tokenStream.getTokens());
-            PhasedUnit phasedUnit = new PhasedUnit(file, srcDir, cu, 
-                    moduleSourceMapper.getCurrentPackage(), moduleManager, moduleSourceMapper,
-                    context, tokens);
-            addPhasedUnit(file, phasedUnit);
-
-            List<LexError> lexerErrors = lexer.getErrors();
-            for (LexError le : lexerErrors) {
-                //System.out.println("Lexer error in " + file.getName() + ": " + le.getMessage());
-                cu.addLexError(le);
+            //the package must be determined now, while 
+            //the package stack is positioned on the file
+            Package pkg = moduleSourceMapper.getCurrentPackage();
+            if (forkJoinPool == null || pendingUnits == null) {
+                addPhasedUnit(file, srcDir, pkg, parse(file));
             }
-            lexerErrors.clear();
-
-            List<ParseError> parserErrors = parser.getErrors();
-            for (ParseError pe : parserErrors) {
-                //System.out.println("Parser error in " + file.getName() + ": " + pe.getMessage());
-                cu.addParseError(pe);
+            else {
+                final VirtualFile sourceFile = file;
+                ForkJoinTask<ParsedFile> task = forkJoinPool.submit(new Callable<ParsedFile>() {
+                    @Override
+                    public ParsedFile call() throws Exception {
+                        return parse(sourceFile);
+                    }
+                });
+                pendingUnits.add(new PendingUnit(file, srcDir, pkg, task));
+            }
+        }
+    }
+    
+    /**
+     * Lex and parse the given file. This does not touch 
+     * any state shared with other files, and so may be
+     * called concurrently.
+     */
+    private ParsedFile parse(VirtualFile file) throws Exception {
+        String encoding = getEncoding();
+        if (preparsed != null && preparsed.encoding.equals(encoding)) {
+            ParsedFile parsedFile = preparsed.files.remove(file.getPath());
+            if (parsedFile != null) {
+                return parsedFile;
+            }
+        }
+        return parse(context, file, encoding);
+    }
+    
+    private static ParsedFile parse(Context context, VirtualFile file, 
+            String encoding) throws Exception {
+        PhaseListener phaseListener = context.getPhaseListener();
+        if (phaseListener == null) {
+            return parseOrRead(context, file, encoding);
+        }
+        Stopwatch stopwatch = new Stopwatch();
+        ParsedFile parsedFile = parseOrRead(context, file, encoding);
+        phaseListener.fileParsed(file, 
+                stopwatch.start, stopwatch.nanos(), 
+                stopwatch.allocatedBytes());
+        return parsedFile;
+    }
+    
+    private static ParsedFile parseOrRead(Context context, VirtualFile file, 
+            String encoding) throws Exception {
+        //System.out.println("Parsing " + file.getName());
+        ParseCache parseCache = context.getParseCache();
+        if (parseCache == null) {
+            if (file instanceof ContentVirtualFile) {
+                ContentVirtualFile cvf = (ContentVirtualFile) file;
+                return parse(cvf.getCharContent(encoding));
+            }
+            else {
+                return parse(new ANTLRInputStream(file.getInputStream(), encoding));
+            }
+        }
+        byte[] content = readContent(file);
+        ParsedFile parsedFile = parseCache.get(content, encoding);
+        if (parsedFile == null) {
+            parsedFile = parse(Helper.decode(content, encoding));
+            parseCache.put(content, encoding, parsedFile);
+        }
+        return parsedFile;
+    }
+    
+    private static byte[] readContent(VirtualFile file) throws IOException {
+        if (file instanceof ContentVirtualFile) {
+            return ((ContentVirtualFile) file).getContent();
+        }
+        InputStream is = file.getInputStream();
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                content.write(buffer, 0, read);
             }
-            parserErrors.clear();
+            return content.toByteArray();
+        }
+        finally {
+            is.close();
+        }
+    }
+    
+    private static ParsedFile parse(char[] content) throws Exception {
+        return parse(new ANTLRStringStream(content, content.length));
+    }
+    
+    private static ParsedFile parse(CharStream input) throws Exception {
+        CeylonLexer lexer = new CeylonLexer(input);
+        CommonTokenStream tokenStream = new CommonTokenStream(lexer);
+        CeylonParser parser = new CeylonParser(tokenStream);
+        Tree.CompilationUnit cu = parser.compilationUnit();
+        List<CommonToken> tokens = new ArrayList<CommonToken>(tokenStream.getTokens().size()); 
+        tokens.addAll(tokenStream.getTokens());
 
+        List<LexError> lexerErrors = lexer.getErrors();
+        for (LexError le : lexerErrors) {
+            //System.out.println("Lexer error: " + le.getMessage());
+            cu.addLexError(le);
+        }
+        lexerErrors.clear();
+
+        List<ParseError> parserErrors = parser.getErrors();
+        for (ParseError pe : parserErrors) {
+            //System.out.println("Parser error: " + pe.getMessage());
+            cu.addParseError(pe);
+        }
+        parserErrors.clear();
+        
+        IterativeWalker.walk(trimmer, cu);
+        cu.connectWalkedParents();
+        
+        return new ParsedFile(cu, tokens);
+    }
+    
+    /**
+     * Trims the lists of children of every node of a
+     * parsed tree to size.
+     */
+    private static final Visitor trimmer = new Visitor() {
+        @Override
+        public boolean enter(Node that) {
+            that.trimToSize();
+            return true;
+        }
+    };
+    
+    private void addPhasedUnit(VirtualFile file, VirtualFile srcDir, 
+            Package pkg, ParsedFile parsedFile) {
+        //the parse cache is done with the tokens by now
+        List<CommonToken> tokens = context.isRetainTokens() ? 
+                TokenStore.pack(parsedFile.tokens) : 
+                Collections.<CommonToken>emptyList();
+        PhasedUnit phasedUnit = new PhasedUnit(file, srcDir, parsedFile.compilationUnit, 
+                pkg, moduleManager, moduleSourceMapper,
+                context, tokens);
+        addPhasedUnit(file, phasedUnit);
+    }
+    
+    /**
+     * Wait for the files submitted for concurrent 
+     * parsing, and register their units in the order
+     * in which the files were found.
+     */
+    private void addPendingUnits(List<PendingUnit> pendingUnits) {
+        for (PendingUnit pending : pendingUnits) {
+            addPhasedUnit(pending.file, pending.srcDir, pending.pkg, 
+                    pending.task.join());
+        }
+    }
+    
+    /**
+     * Lex and parse every source file in the given 
+     * directory tree, without creating any unit or
+     * touching the model, so that this may run on any
+     * thread, even before the {@link PhasedUnits} which
+     * will own the units exists. Pass the result to
+     * {@link #setPreparsed(Preparsed)} to have 
+     * {@link #parseUnit(VirtualFile)} use it.
+     * 
+     * @param encoding the encoding, or null for the
+     *        default encoding
+     */
+    public static Preparsed preparse(Context context, 
+            VirtualFile srcDir, String encoding) throws Exception {
+        if (encoding == null) {
+            encoding = System.getProperty("file.encoding");
+        }
+        Preparsed preparsed = new Preparsed(encoding);
+        preparse(context, srcDir, preparsed);
+        return preparsed;
+    }
+    
+    private static void preparse(Context context, VirtualFile file, 
+            Preparsed preparsed) throws Exception {
+        if (file.isFolder()) {
+            for (VirtualFile subfile : file.getChildren()) {
+                preparse(context, subfile, preparsed);
+            }
+        }
+        else if (file.getName().endsWith(".ceylon")) {
+            preparsed.files.put(file.getPath(), 
+                    parse(context, file, preparsed.encoding));
+        }
+    }
+    
+    /**
+     * Source files parsed ahead of time, by path.
+     */
+    public static final class Preparsed {
+        final String encoding;
+        final Map<String, ParsedFile> files = 
+                new ConcurrentHashMap<String, ParsedFile>();
+        Preparsed(String encoding) {
+            this.encoding = encoding;
+        }
+    }
+    
+    private static final class PendingUnit {
+        final VirtualFile file;
+        final VirtualFile srcDir;
+        final Package pkg;
+        final ForkJoinTask<ParsedFile> task;
+        PendingUnit(VirtualFile file, VirtualFile srcDir, Package pkg, 
+                ForkJoinTask<ParsedFile> task) {
+            this.file = file;
+            this.srcDir = srcDir;
+            this.pkg = pkg;
+            this.task = task;
         }
     }
 
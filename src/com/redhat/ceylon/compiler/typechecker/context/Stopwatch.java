@@ -0,0 +1,57 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the wall time, and, where the VM supports it,
+ * the memory allocated by the current thread, since it
+ * was started.
+ */
+final class Stopwatch {
+
+    private static final com.sun.management.ThreadMXBean threads;
+
+    static {
+        com.sun.management.ThreadMXBean bean = null;
+        try {
+            java.lang.management.ThreadMXBean mx = 
+                    ManagementFactory.getThreadMXBean();
+            if (mx instanceof com.sun.management.ThreadMXBean) {
+                bean = (com.sun.management.ThreadMXBean) mx;
+                if (!bean.isThreadAllocatedMemorySupported() ||
+                    !bean.isThreadAllocatedMemoryEnabled()) {
+                    bean = null;
+                }
+            }
+        }
+        catch (LinkageError e) {
+            //not a HotSpot VM
+        }
+        threads = bean;
+    }
+
+    final long start;
+    private final long startBytes;
+
+    Stopwatch() {
+        startBytes = threadAllocatedBytes();
+        start = System.nanoTime();
+    }
+
+    long nanos() {
+        return System.nanoTime()-start;
+    }
+
+    long allocatedBytes() {
+        long bytes = threadAllocatedBytes();
+        return bytes<0 || startBytes<0 ? 
+                -1 : bytes-startBytes;
+    }
+
+    private static long threadAllocatedBytes() {
+        return threads==null ? -1 : 
+            threads.getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.antlr.runtime.CharStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+
+/**
+ * The token stream of a unit, in which the tokens on the
+ * default channel, most of which are also tokens of the
+ * tree, are kept as they are, and the tokens on hidden
+ * channels, whitespace and comments, which nothing else
+ * retains, are packed into arrays, one for each field of
+ * the tokens. The text of a hidden token is sliced from
+ * the source, which is retained anyway by the tokens of
+ * the tree, unless the lexer gave the token some other
+ * text.
+ *
+ * The store is a read-only list of tokens, but each
+ * call to {@link #get(int)} for a hidden token returns a
+ * new token, equal in every field to the original token,
+ * so hidden tokens must not be compared by identity.
+ * {@link #indexOf(Object)} also finds the original hidden
+ * tokens.
+ */
+final class TokenStore extends AbstractList<CommonToken>
+        implements RandomAccess {
+
+    private final CharStream input;
+    /**
+     * The tokens on the default channel, with null in 
+     * place of each hidden token.
+     */
+    private final CommonToken[] tokens;
+    /**
+     * The index in the stream of each hidden token, in
+     * ascending order.
+     */
+    private final int[] hiddenIndexes;
+    private final short[] types;
+    private final byte[] channels;
+    private final int[] starts;
+    private final int[] stops;
+    private final int[] lines;
+    private final int[] columns;
+    /**
+     * The text of each hidden token whose text is not the
+     * same as its slice of the source, or null if there
+     * are no such tokens.
+     */
+    private String[] texts;
+
+    private TokenStore(CharStream input, int size, int hidden) {
+        this.input = input;
+        tokens = new CommonToken[size];
+        hiddenIndexes = new int[hidden];
+        types = new short[hidden];
+        channels = new byte[hidden];
+        starts = new int[hidden];
+        stops = new int[hidden];
+        lines = new int[hidden];
+        columns = new int[hidden];
+    }
+
+    /**
+     * Pack the given tokens, which must be the whole
+     * stream produced by a lexer, if possible, or return
+     * them unchanged, if some token can't be represented.
+     */
+    static List<CommonToken> pack(List<CommonToken> tokens) {
+        int size = tokens.size();
+        if (size==0) {
+            return tokens;
+        }
+        CharStream input = tokens.get(0).getInputStream();
+        int hidden = 0;
+        for (int i=0; i<size; i++) {
+            CommonToken token = tokens.get(i);
+            if (token.getTokenIndex()!=i) {
+                return tokens;
+            }
+            if (token.getChannel()!=Token.DEFAULT_CHANNEL) {
+                if (token.getClass()!=CommonToken.class ||
+                        token.getInputStream()!=input ||
+                        token.getType()!=(short) token.getType() ||
+                        token.getChannel()!=(byte) token.getChannel()) {
+                    return tokens;
+                }
+                hidden++;
+            }
+        }
+        TokenStore store = new TokenStore(input, size, hidden);
+        int h = 0;
+        for (int i=0; i<size; i++) {
+            CommonToken token = tokens.get(i);
+            if (token.getChannel()==Token.DEFAULT_CHANNEL) {
+                store.tokens[i] = token;
+            }
+            else {
+                store.store(h++, token);
+            }
+        }
+        return store;
+    }
+
+    private void store(int h, CommonToken token) {
+        hiddenIndexes[h] = token.getTokenIndex();
+        types[h] = (short) token.getType();
+        channels[h] = (byte) token.getChannel();
+        starts[h] = token.getStartIndex();
+        stops[h] = token.getStopIndex();
+        lines[h] = token.getLine();
+        columns[h] = token.getCharPositionInLine();
+        String text = token.getText();
+        if (text!=null && !text.equals(slice(h))) {
+            if (texts==null) {
+                texts = new String[types.length];
+            }
+            texts[h] = text;
+        }
+    }
+
+    /**
+     * The text of the hidden token with no text of its 
+     * own, as computed by {@link CommonToken#getText()}.
+     */
+    private String slice(int h) {
+        if (input==null) {
+            return null;
+        }
+        int size = input.size();
+        return starts[h]<size && stops[h]<size ?
+                input.substring(starts[h], stops[h]) : "<EOF>";
+    }
+
+    @Override
+    public CommonToken get(int i) {
+        if (i<0 || i>=tokens.length) {
+            throw new IndexOutOfBoundsException("token index: " + i);
+        }
+        CommonToken token = tokens[i];
+        if (token!=null) {
+            return token;
+        }
+        int h = Arrays.binarySearch(hiddenIndexes, i);
+        token = new CommonToken(input, types[h], channels[h],
+                        starts[h], stops[h]);
+        token.setLine(lines[h]);
+        token.setCharPositionInLine(columns[h]);
+        token.setTokenIndex(i);
+        if (texts!=null && texts[h]!=null) {
+            token.setText(texts[h]);
+        }
+        return token;
+    }
+
+    @Override
+    public int size() {
+        return tokens.length;
+    }
+
+    @Override
+    public int indexOf(Object object) {
+        if (object instanceof Token) {
+            Token token = (Token) object;
+            int i = token.getTokenIndex();
+            if (i>=0 && i<tokens.length) {
+                if (tokens[i]!=null) {
+                    return tokens[i]==token ? i : -1;
+                }
+                int h = Arrays.binarySearch(hiddenIndexes, i);
+                if (token.getType()==types[h] &&
+                        token.getInputStream()==input &&
+                        token instanceof CommonToken &&
+                        ((CommonToken) token).getStartIndex()==starts[h]) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object object) {
+        return indexOf(object);
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return indexOf(object)>=0;
+    }
+
+}
@@ -1,7 +1,9 @@
 package com.redhat.ceylon.compiler.typechecker.context;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.redhat.ceylon.common.BackendSupport;
 import com.redhat.ceylon.common.Backends;
@@ -22,6 +24,18 @@ public class TypecheckerUnit extends Unit implements BackendSupport {
         return missingNativeImplementations;
     }
     
+    private Set<String> dependentsOf = 
+            Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+    
+    /**
+     * The full paths of the units which refer to a 
+     * declaration belonging to this unit. Populated 
+     * when the referring units are fully typed.
+     */
+    public Set<String> getDependentsOf() {
+        return dependentsOf;
+    }
+    
     private Backends supportedBackends = Backends.ANY;
 
     @Override
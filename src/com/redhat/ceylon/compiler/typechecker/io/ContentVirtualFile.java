@@ -0,0 +1,24 @@
+package com.redhat.ceylon.compiler.typechecker.io;
+
+import java.io.IOException;
+
+/**
+ * A file whose whole content can be read in one go, 
+ * into a buffer of the right size, instead of through
+ * the stream returned by {@link #getInputStream()}.
+ */
+public interface ContentVirtualFile extends VirtualFile {
+    /**
+     * The raw content of the file.
+     * @throws exception when is a folder
+     */
+    byte[] getContent() throws IOException;
+
+    /**
+     * The content of the file, decoded using the given 
+     * encoding. Malformed input is replaced, as it is by
+     * an {@link java.io.InputStreamReader}.
+     * @throws exception when is a folder
+     */
+    char[] getCharContent(String encoding) throws IOException;
+}
@@ -1,11 +1,14 @@
 package com.redhat.ceylon.compiler.typechecker.io.impl;
 
+import com.redhat.ceylon.compiler.typechecker.io.ContentVirtualFile;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -13,7 +16,7 @@ import java.util.List;
 /**
  * @author Emmanuel Bernard <emmanuel@hibernate.org>
  */
-public class FileSystemVirtualFile implements VirtualFile {
+public class FileSystemVirtualFile implements ContentVirtualFile {
     private final File file;
     
 
@@ -57,6 +60,16 @@ public class FileSystemVirtualFile implements VirtualFile {
         }
     }
 
+    @Override
+    public byte[] getContent() throws IOException {
+        return Files.readAllBytes( file.toPath() );
+    }
+
+    @Override
+    public char[] getCharContent(String encoding) throws IOException {
+        return Helper.decode( getContent(), encoding );
+    }
+
     @Override
     public List<VirtualFile> getChildren() {
         List<VirtualFile> files;
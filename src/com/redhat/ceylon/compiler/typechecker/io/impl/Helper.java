@@ -1,6 +1,12 @@
 package com.redhat.ceylon.compiler.typechecker.io.impl;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
 import java.util.zip.ZipEntry;
 
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
@@ -25,6 +31,28 @@ public class Helper {
         }
     }
 
+    /**
+     * Decode the whole of the given content at once, 
+     * replacing malformed input.
+     */
+    public static char[] decode(byte[] content, String encoding) {
+        try {
+            CharBuffer chars = Charset.forName(encoding)
+                    .newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(ByteBuffer.wrap(content));
+            char[] array = chars.array();
+            // the decoder sizes the buffer for the worst case
+            return chars.limit() == array.length ? 
+                    array : Arrays.copyOf(array, chars.limit());
+        }
+        catch (CharacterCodingException e) {
+            // can't happen when replacing malformed input
+            throw new RuntimeException(e);
+        }
+    }
+
     public static File getHomeRepository() {
         File repo;
         String ceylonUserRepo = System.getProperty("ceylon.user.repo");
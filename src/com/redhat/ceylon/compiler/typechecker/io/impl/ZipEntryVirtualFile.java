@@ -1,7 +1,9 @@
 package com.redhat.ceylon.compiler.typechecker.io.impl;
 
+import com.redhat.ceylon.compiler.typechecker.io.ContentVirtualFile;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -14,7 +16,7 @@ import java.io.FilterInputStream;
 /**
  * @author Emmanuel Bernard <emmanuel@hibernate.org>
  */
-class ZipEntryVirtualFile implements VirtualFile {
+class ZipEntryVirtualFile implements ContentVirtualFile {
 
     public static final List<VirtualFile> EMPTY_CHILDREN = Collections.unmodifiableList( new ArrayList<VirtualFile>(0) );
     private final String name;
@@ -65,6 +67,45 @@ class ZipEntryVirtualFile implements VirtualFile {
         }
     }
 
+    @Override
+    public byte[] getContent() throws IOException {
+        InputStream is = zipFile.getInputStream( entry );
+        try {
+            long size = entry.getSize();
+            if (size >= 0 && size <= Integer.MAX_VALUE) {
+                // the archive tells us the size up front
+                byte[] content = new byte[(int) size];
+                int offset = 0;
+                int read;
+                while (offset < content.length && 
+                        (read = is.read(content, offset, content.length - offset)) >= 0) {
+                    offset += read;
+                }
+                if (offset == content.length) {
+                    return content;
+                }
+                throw new IOException("Unexpected end of entry: " + getPath());
+            }
+            else {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) >= 0) {
+                    content.write(buffer, 0, read);
+                }
+                return content.toByteArray();
+            }
+        }
+        finally {
+            is.close();
+        }
+    }
+
+    @Override
+    public char[] getCharContent(String encoding) throws IOException {
+        return Helper.decode( getContent(), encoding );
+    }
+
     @Override
     public List<VirtualFile> getChildren() {
         return EMPTY_CHILDREN;
@@ -4,11 +4,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -16,14 +16,29 @@ import com.redhat.ceylon.compiler.typechecker.io.ClosableVirtualFile;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
 
 /**
+ * A zip archive, with the folders and files it contains
+ * created on demand, the first time the children of
+ * their folder are requested.
+ * 
  * @author Emmanuel Bernard <emmanuel@hibernate.org>
  */
 public class ZipFileVirtualFile implements ClosableVirtualFile {
 
     protected final ZipFile zipFile;
     private final String name;
-    private final List<VirtualFile> children;
     private final boolean closable;
+    /**
+     * The names of the entries directly inside each folder
+     * whose children haven't been created yet, keyed by
+     * the entry name of the folder, or by the empty string
+     * for the root of the archive. Folder entry names end
+     * with a slash. A folder name is created once, and
+     * shared as the key of its own entry and in the list 
+     * of its parent.
+     */
+    private final Map<String,List<String>> entryNames = 
+            new HashMap<String,List<String>>();
+    private List<VirtualFile> children;
 
     public ZipFileVirtualFile(File file) throws IOException {
         this( new ZipFile(file), true );
@@ -39,70 +54,63 @@ public class ZipFileVirtualFile implements ClosableVirtualFile {
         final String path = zipFile.getName();
         final int lastIndex = path.lastIndexOf(File.separator);
         this.name = lastIndex == -1 ? path : path.substring(lastIndex+1);
+        entryNames.put("", new ArrayList<String>());
         final Enumeration<? extends ZipEntry> entries = zipFile.entries();
-        SortedSet<String> entryNames = new TreeSet<String>();
         while ( entries.hasMoreElements() ) {
-            String entryName = entries.nextElement().getName();
-            // Also add the ancestor directories (for the case directories are not in the archive)
-            List<String> parentEntriesNames = getParentEntriesNames(entryName);
-            entryNames.add(entryName);
-            entryNames.addAll(parentEntriesNames);
+            addEntryName( entries.nextElement().getName() );
         }
-        List<VirtualFile> directChildren = new ArrayList<VirtualFile>();
-        LinkedList<ZipFolderVirtualFile> directoryStack = new LinkedList<ZipFolderVirtualFile>();
-        for ( String entryName : entryNames ) {
-            if ( entryName.endsWith("/")) {
-                /*
-                entries are now ordered with directories,
-                if an entry is a child of the previous entry, add it as child
-                if an entry is not a child of the previous entry, move up till we find its parent
-                 */
-                final ZipFolderVirtualFile folder = new ZipFolderVirtualFile(entryName, path);
-                addToParentfolder(directChildren, directoryStack, entryName, folder);
-                directoryStack.addLast(folder);
-            }
-            else {
-                final ZipEntry entry = zipFile.getEntry(entryName);
-                ZipEntryVirtualFile file = new ZipEntryVirtualFile(entry, zipFile);
-                addToParentfolder(directChildren, directoryStack, entryName, file);
-            }
-        }
-        children = directChildren;
     }
 
-    private List<String> getParentEntriesNames(String entryName) {
-        List<String> parentEntries = new ArrayList<String>();
-        String[] entrySegments = entryName.split("/");
-        if (entrySegments.length == 0) {
-            return parentEntries;
+    /**
+     * Add the entry to the list of its parent folder, and
+     * also add the ancestor folders, for the case where 
+     * directories are not in the archive.
+     */
+    private void addEntryName(String entryName) {
+        final boolean folder = entryName.endsWith("/");
+        if (folder) {
+            if ( entryNames.containsKey(entryName) ) {
+                return;
+            }
+            entryNames.put( entryName, new ArrayList<String>() );
         }
-        String ancestor = "";
-        for (int i=0; i<entrySegments.length - 1; i++) {
-            ancestor += entrySegments[i] + "/";
-            parentEntries.add(ancestor);
+        final int end = folder ? entryName.length() - 1 : entryName.length();
+        final int lastIndex = entryName.lastIndexOf('/', end - 1);
+        final String parent = lastIndex == -1 ? "" : entryName.substring(0, lastIndex + 1);
+        List<String> siblings = entryNames.get(parent);
+        if (siblings == null) {
+            addEntryName(parent);
+            siblings = entryNames.get(parent);
         }
-        return parentEntries;
+        siblings.add(entryName);
     }
 
-    private void addToParentfolder(List<VirtualFile> directChildren, LinkedList<ZipFolderVirtualFile> directoryStack, String entryName, VirtualFile file) {
-        ZipFolderVirtualFile up = directoryStack.peekLast();
-        while ( !isChildOf(entryName, up) ) {
-            directoryStack.pollLast();
-            up = directoryStack.peekLast();
-        }
-        if (up == null) {
-            directChildren.add(file);
-        }
-        else {
-            up.addChild(file);
+    /**
+     * Create the folders and files directly inside the 
+     * given folder, in the order of their entry names.
+     */
+    synchronized List<VirtualFile> createChildren(String folderEntryName) {
+        final List<String> names = entryNames.remove(folderEntryName);
+        if (names == null) {
+            return new ArrayList<VirtualFile>(0);
         }
-    }
-
-    private boolean isChildOf(String entryName, ZipFolderVirtualFile lastFolder) {
-        if (lastFolder == null) {
-            return true;
+        Collections.sort(names);
+        final List<VirtualFile> result = new ArrayList<VirtualFile>( names.size() );
+        String previous = null;
+        for ( String entryName : names ) {
+            // the archive may contain duplicate entries
+            if ( entryName.equals(previous) ) {
+                continue;
+            }
+            previous = entryName;
+            if ( entryName.endsWith("/") ) {
+                result.add( new ZipFolderVirtualFile(entryName, zipFile.getName(), this) );
+            }
+            else {
+                result.add( new ZipEntryVirtualFile(zipFile.getEntry(entryName), zipFile) );
+            }
         }
-        return entryName.startsWith( lastFolder.getEntryName() );
+        return result;
     }
 
     @Override
@@ -131,7 +139,10 @@ public class ZipFileVirtualFile implements ClosableVirtualFile {
     }
 
     @Override
-    public List<VirtualFile> getChildren() {
+    public synchronized List<VirtualFile> getChildren() {
+        if (children == null) {
+            children = createChildren("");
+        }
         return children;
     }
 
@@ -1,7 +1,6 @@
 package com.redhat.ceylon.compiler.typechecker.io.impl;
 
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -15,9 +14,11 @@ class ZipFolderVirtualFile implements VirtualFile {
     private final String name;
     private final String path;
     private final String entryName;
-    private final List<VirtualFile> children = new ArrayList<VirtualFile>();
+    private final ZipFileVirtualFile zipFile;
+    private List<VirtualFile> children;
 
-    public ZipFolderVirtualFile(String entryName, String rootPath) {
+    public ZipFolderVirtualFile(String entryName, String rootPath, ZipFileVirtualFile zipFile) {
+        this.zipFile = zipFile;
         this.name = Helper.getSimpleName(entryName);
         this.entryName = entryName;
         String tempPath = rootPath + "!/" + entryName;
@@ -50,12 +51,11 @@ class ZipFolderVirtualFile implements VirtualFile {
     }
 
     @Override
-    public List<VirtualFile> getChildren() {
-        return Collections.unmodifiableList( children );
-    }
-
-    public void addChild(VirtualFile file) {
-        children.add(file);
+    public synchronized List<VirtualFile> getChildren() {
+        if (children == null) {
+            children = Collections.unmodifiableList( zipFile.createChildren(entryName) );
+        }
+        return children;
     }
 
     public String getEntryName() {
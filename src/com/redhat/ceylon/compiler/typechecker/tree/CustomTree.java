@@ -1,5 +1,7 @@
 package com.redhat.ceylon.compiler.typechecker.tree;
 
+import java.io.IOException;
+
 import org.antlr.runtime.Token;
 
 public class CustomTree extends Tree {
@@ -28,6 +30,7 @@ public class CustomTree extends Tree {
         @Override
         public void setVariable(Tree.Variable node) {
             variable = node;
+            adopt(node);
         }
         @Override
         public Tree.Variable getVariable() {
@@ -49,5 +52,31 @@ public class CustomTree extends Tree {
             this.conditionList = condition;
         }
     }
+    
+    /**
+     * Write the children which only the custom node 
+     * classes have, for the {@link TreeSerializer}.
+     */
+    static void writeCustomChildren(TreeSerializer serializer, 
+            NodeOutput out, Node node) throws IOException {
+        if (node instanceof ExtendedTypeExpression) {
+            ExtendedTypeExpression ete = 
+                    (ExtendedTypeExpression) node;
+            serializer.writeNode(out, ete.getType());
+        }
+    }
+    
+    /**
+     * Read back the children written by
+     * {@link #writeCustomChildren}.
+     */
+    static void readCustomChildren(TreeSerializer serializer, 
+            NodeInput in, Node node) throws IOException {
+        if (node instanceof ExtendedTypeExpression) {
+            ExtendedTypeExpression ete = 
+                    (ExtendedTypeExpression) node;
+            ete.setType((SimpleType) serializer.readNode(in));
+        }
+    }
 
 }
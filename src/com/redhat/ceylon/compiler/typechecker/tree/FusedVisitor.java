@@ -0,0 +1,250 @@
+package com.redhat.ceylon.compiler.typechecker.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs several visitors in a single walk of a tree,
+ * instead of one walk for each of them.
+ *
+ * Each node is dispatched to the visitors in order.
+ * When a visitor descends into the node, through
+ * {@link Visitor#visitAny(Node)}, usually by calling
+ * {@code super.visit(that)}, the node is dispatched to
+ * the next visitor, and after the last one, the children
+ * are walked once, for all the visitors which descended.
+ * So each visitor still sees every node before and after
+ * its children, as if it walked the tree by itself, but
+ * the visitors are interleaved: the first visitor leaves
+ * a node after the others have left it.
+ *
+ * A visitor which doesn't descend into a node, or which
+ * walks its children by itself, gets the same children
+ * it would get without fusion, but only visitors which
+ * don't depend on another visitor having already walked
+ * the whole tree may be fused.
+ *
+ * The messages the visitors add to a node are left in 
+ * the order in which the visitors were given, as if 
+ * each visitor had walked the tree by itself, though a
+ * {@link MessageListener} is still told of each message
+ * as soon as it is added.
+ */
+public class FusedVisitor extends Visitor {
+
+    private final Visitor[] fused;
+    private Visitor[] visitors;
+
+    //the position of the running visitor among the
+    //fused visitors, and the messages added so far
+    private int active;
+    private MessageRecorder recorder;
+
+    //the state of the node being dispatched
+    private Node node;
+    private int index;
+    private Visitor[] descended;
+    private int count;
+    private boolean walked;
+
+    public FusedVisitor(Visitor... visitors) {
+        for (Visitor visitor: visitors) {
+            if (visitor.fusedVisitor!=null) {
+                throw new IllegalArgumentException(
+                        "visitor is already fused: " + visitor);
+            }
+            visitor.fusedVisitor = this;
+        }
+        this.fused = visitors.clone();
+        this.visitors = fused;
+    }
+
+    @Override
+    public void visitAny(Node that) {
+        if (recorder==null) {
+            walk(that);
+            return;
+        }
+        Node node = this.node;
+        int index = this.index;
+        Visitor[] descended = this.descended;
+        int count = this.count;
+        boolean walked = this.walked;
+        this.node = that;
+        this.index = 0;
+        this.descended = null;
+        this.count = 0;
+        this.walked = false;
+        try {
+            dispatch();
+        }
+        finally {
+            this.node = node;
+            this.index = index;
+            this.descended = descended;
+            this.count = count;
+            this.walked = walked;
+        }
+    }
+
+    /**
+     * Dispatch the current node to the remaining
+     * visitors, and then walk its children for every
+     * visitor which descended into it.
+     */
+    private void dispatch() {
+        while (index<visitors.length) {
+            Visitor visitor = visitors[index++];
+            active = position(visitor);
+            node.visit(visitor);
+        }
+        if (!walked) {
+            walked = true;
+            if (count>0) {
+                Visitor[] visitors = this.visitors;
+                if (count<visitors.length) {
+                    Visitor[] children = new Visitor[count];
+                    System.arraycopy(descended, 0, children, 0, count);
+                    this.visitors = children;
+                }
+                try {
+                    node.visitChildren(this);
+                }
+                finally {
+                    this.visitors = visitors;
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when the given visitor descends into the
+     * given node. If it is the node being dispatched to
+     * that visitor, carry on dispatching it, and return
+     * true. Otherwise, the visitor is walking some other
+     * node by itself.
+     */
+    boolean descend(Visitor visitor, Node that) {
+        if (that!=node || index==0 ||
+                visitors[index-1]!=visitor ||
+                count>0 && descended[count-1]==visitor) {
+            return false;
+        }
+        if (descended==null) {
+            descended = new Visitor[visitors.length];
+        }
+        descended[count++] = visitor;
+        dispatch();
+        //back in the code of the visitor
+        active = position(visitor);
+        return true;
+    }
+
+    private int position(Visitor visitor) {
+        for (int i=0; i<fused.length; i++) {
+            if (fused[i]==visitor) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Walk the given tree, recording the messages added
+     * to its nodes, and then put the messages of each 
+     * node in the order of the visitors which added them.
+     */
+    private void walk(Node root) {
+        MessageRecorder recorder = new MessageRecorder();
+        recorder.outer = Node.setMessageListener(recorder);
+        this.recorder = recorder;
+        try {
+            visitAny(root);
+        }
+        finally {
+            this.recorder = null;
+            Node.setMessageListener(recorder.outer);
+        }
+        recorder.sortMessages();
+    }
+
+    private final class MessageRecorder 
+            implements MessageListener {
+
+        MessageListener outer;
+        final List<Node> nodes = new ArrayList<Node>();
+        final List<Message> messages = new ArrayList<Message>();
+        final List<Integer> positions = new ArrayList<Integer>();
+
+        @Override
+        public void messageAdded(Node node, Message message) {
+            nodes.add(node);
+            messages.add(message);
+            positions.add(active);
+            if (outer!=null) {
+                outer.messageAdded(node, message);
+            }
+        }
+
+        /**
+         * Stable sort the messages the walk added to each
+         * node, which are the last messages of the node,
+         * by the position of the visitor which added them.
+         */
+        void sortMessages() {
+            if (messages.size()<2) {
+                return;
+            }
+            Map<Node,List<Integer>> added = 
+                    new IdentityHashMap<Node,List<Integer>>();
+            for (int i=0; i<nodes.size(); i++) {
+                List<Integer> list = added.get(nodes.get(i));
+                if (list==null) {
+                    list = new ArrayList<Integer>(2);
+                    added.put(nodes.get(i), list);
+                }
+                list.add(i);
+            }
+            Comparator<Integer> byVisitor = 
+                    new Comparator<Integer>() {
+                @Override
+                public int compare(Integer x, Integer y) {
+                    return positions.get(x).compareTo(positions.get(y));
+                }
+            };
+            for (Map.Entry<Node,List<Integer>> entry: 
+                    added.entrySet()) {
+                List<Integer> list = entry.getValue();
+                if (list.size()<2) {
+                    continue;
+                }
+                List<Message> errors = entry.getKey().getErrors();
+                int start = errors.size()-list.size();
+                if (start<0 || !isTail(errors, start, list)) {
+                    //something else changed the messages
+                    continue;
+                }
+                List<Integer> sorted = new ArrayList<Integer>(list);
+                Collections.sort(sorted, byVisitor);
+                for (int i=0; i<sorted.size(); i++) {
+                    errors.set(start+i, messages.get(sorted.get(i)));
+                }
+            }
+        }
+
+        private boolean isTail(List<Message> errors, int start, 
+                List<Integer> list) {
+            for (int i=0; i<list.size(); i++) {
+                if (errors.get(start+i)!=messages.get(list.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
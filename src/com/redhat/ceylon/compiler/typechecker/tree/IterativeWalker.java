@@ -0,0 +1,98 @@
+package com.redhat.ceylon.compiler.typechecker.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks a tree using an explicit stack, instead of the
+ * recursion of {@link Node#visit(Visitor)}, so that the
+ * depth of the tree is not limited by the size of the
+ * thread stack. Instead of the typed {@code visit()}
+ * methods, the visitor is notified through
+ * {@link Visitor#enter(Node)} and
+ * {@link Visitor#exit(Node)}, before and after the
+ * children of each node, which are walked in the same
+ * order as by {@link Node#visitChildren(Visitor)}.
+ *
+ * <code>
+ *     IterativeWalker.walk(new Visitor() {
+ *         &#64;Override
+ *         public void exit(Node that) {
+ *             ...
+ *         }
+ *     },
+ *     compilationUnit);
+ * </code>
+ *
+ * An exception thrown by a callback is passed to
+ * {@link Visitor#handleException(Exception, Node)}, and
+ * if it was thrown by {@code enter()}, the children of
+ * the node are skipped. {@code exit()} is called for
+ * every node that was entered.
+ */
+public class IterativeWalker {
+
+    private Node[] nodes = new Node[64];
+    private boolean[] exiting = new boolean[64];
+    private int size;
+    private final List<Node> children = new ArrayList<Node>();
+
+    private IterativeWalker() {}
+
+    public static void walk(Visitor visitor, Node root) {
+        new IterativeWalker().run(visitor, root);
+    }
+
+    private void run(Visitor visitor, Node root) {
+        push(root, false);
+        while (size>0) {
+            size--;
+            Node node = nodes[size];
+            boolean exit = exiting[size];
+            nodes[size] = null;
+            if (exit) {
+                try {
+                    visitor.exit(node);
+                }
+                catch (Exception e) {
+                    visitor.handleException(e, node);
+                }
+            }
+            else {
+                boolean descend;
+                try {
+                    descend = visitor.enter(node);
+                }
+                catch (Exception e) {
+                    visitor.handleException(e, node);
+                    descend = false;
+                }
+                push(node, true);
+                if (descend) {
+                    node.collectChildren(children);
+                    //push them backwards, so that the first
+                    //child is on top of the stack
+                    for (int i=children.size()-1; i>=0; i--) {
+                        push(children.get(i), false);
+                    }
+                    children.clear();
+                }
+            }
+        }
+    }
+
+    private void push(Node node, boolean exit) {
+        if (size==nodes.length) {
+            Node[] newNodes = new Node[size*2];
+            System.arraycopy(nodes, 0, newNodes, 0, size);
+            nodes = newNodes;
+            boolean[] newExiting = new boolean[size*2];
+            System.arraycopy(exiting, 0, newExiting, 0, size);
+            exiting = newExiting;
+        }
+        nodes[size] = node;
+        exiting[size] = exit;
+        size++;
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.redhat.ceylon.compiler.typechecker.tree;
+
+/**
+ * Notified of every error and warning added to a node by
+ * the thread on which the listener is installed.
+ *
+ * @see Node#setMessageListener(MessageListener)
+ */
+public interface MessageListener {
+
+    /**
+     * A message was added to the given node.
+     */
+    void messageAdded(Node node, Message message);
+
+}
@@ -1,7 +1,9 @@
 package com.redhat.ceylon.compiler.typechecker.tree;
 
+import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -20,14 +22,49 @@ import com.redhat.ceylon.model.typechecker.model.Scope;
 
 public abstract class Node {
     
-    private String text;
     private Token token;
     private Token endToken;
     private Token firstChildToken;
     private Token lastChildToken;
     private Scope scope;
-    private TypecheckerUnit unit;
-    private List<Message> errors = null;
+    private Extras extras;
+    private transient Node parent;
+    /**
+     * The node which holds the unit of this node: the
+     * root of the tree, or this node, if it was given a
+     * unit other than the unit of its parent, or null if
+     * it is not yet known.
+     */
+    private transient Node unitNode;
+    private transient byte messageFlags;
+    //assigned by the constructor of the node class
+    transient short kind;
+    
+    private static final int CONTAINS_MESSAGE = 1;
+    private static final int CONTAINS_ERROR = 2;
+    //only while connectWalkedParents() runs
+    private static final int REACHED = 4;
+    
+    /**
+     * The state which only a few nodes have, kept out of
+     * the node itself to make every node smaller: an
+     * explicitly assigned text, errors, a unit other
+     * than the unit of the parent node, and the parents
+     * of a node which is the child of several nodes.
+     */
+    private static final class Extras {
+        String text;
+        MessageList errors;
+        TypecheckerUnit unit;
+        Node[] otherParents;
+    }
+    
+    private Extras extras() {
+        if (extras==null) {
+            extras = new Extras();
+        }
+        return extras;
+    }
     
     protected Node(Token token) {
         this.token = token;
@@ -46,20 +83,78 @@ public abstract class Node {
     
     /**
      * The compilation unit in which the node
-     * occurs.
+     * occurs. Only the root of a tree, and nodes 
+     * in some other unit than their parent, keep
+     * their unit; other nodes remember the node
+     * which keeps their unit.
      */
     public TypecheckerUnit getUnit() {
-        return unit;
+        Node holder = unitNode();
+        return holder.extras==null ? null : 
+            holder.extras.unit;
     }
     
+    private Node unitNode() {
+        if (unitNode!=null) {
+            return unitNode;
+        }
+        Node node = this;
+        while (node.unitNode==null && node.parent!=null) {
+            node = node.parent;
+        }
+        Node holder = node.unitNode==null ? 
+                node : node.unitNode;
+        if (holder!=this) {
+            unitNode = holder;
+        }
+        return holder;
+    }
+    
+    /**
+     * Set the unit of this node. The unit of the root of
+     * a tree is the unit of every node of the tree which
+     * was not given a unit of its own, so setting it 
+     * again replaces the unit of all those nodes at once.
+     */
     public void setUnit(TypecheckerUnit unit) {
-        this.unit = unit;
+        if (parent==null) {
+            if (unitNode!=this) {
+                unitNode = this;
+                shareUnit();
+            }
+            extras().unit = unit;
+        }
+        else if (unitNode==this || getUnit()!=unit) {
+            unitNode = this;
+            extras().unit = unit;
+        }
+    }
+    
+    /**
+     * Make this root the holder of the unit of every node
+     * beneath it, including nodes whose parent is not
+     * part of the tree, unless they were given a unit of
+     * their own.
+     */
+    private void shareUnit() {
+        final Node root = this;
+        IterativeWalker.walk(new Visitor() {
+            @Override
+            public boolean enter(Node that) {
+                if (that.unitNode!=that) {
+                    that.unitNode = root;
+                }
+                return true;
+            }
+        },
+        this);
     }
     
     /**
      * The text of the corresponding ANTLR node.
      */
     public String getText() {
+        String text = extras==null ? null : extras.text;
     	if (text!=null) {
     		return text;
     	}
@@ -76,7 +171,9 @@ public abstract class Node {
     }
     
     public void setText(String text) {
-        this.text = text;
+        if (text!=null || extras!=null) {
+            extras().text = text;
+        }
     }
     
     /**
@@ -243,15 +340,243 @@ public abstract class Node {
      * The compilation errors belonging to this node.
      */
     public List<Message> getErrors() {
+        List<Message> errors = 
+                extras==null ? null : extras.errors;
         return errors != null ? 
                 errors : Collections.<Message>emptyList();
     }
     
     public void addError(Message error){
-        if (errors == null) {
-            errors = new ArrayList<Message>(2);
+        Extras extras = extras();
+        if (extras.errors == null) {
+            extras.errors = new MessageList();
+        }
+        extras.errors.append(error);
+        markMessage(error.isWarning() ? 
+                CONTAINS_MESSAGE : 
+                CONTAINS_MESSAGE | CONTAINS_ERROR);
+        MessageListener listener = messageListener.get();
+        if (listener!=null) {
+            listener.messageAdded(this, error);
+        }
+    }
+    
+    private static final ThreadLocal<MessageListener> messageListener = 
+            new ThreadLocal<MessageListener>();
+    
+    /**
+     * Install a listener to be notified of the messages
+     * added to nodes by the current thread, replacing the
+     * current listener, or remove the current listener
+     * if the given listener is null.
+     * 
+     * @return the listener which was replaced, to be
+     *         installed again when the given listener
+     *         is done, or null if there was none
+     */
+    public static MessageListener setMessageListener(
+            MessageListener listener) {
+        MessageListener previous = messageListener.get();
+        if (listener==null) {
+            messageListener.remove();
+        }
+        else {
+            messageListener.set(listener);
         }
-        errors.add(error);
+        return previous;
+    }
+    
+    /**
+     * Record that this node and its ancestors contain
+     * a message. Stops at the first ancestor that 
+     * already knows, since its own ancestors must 
+     * know too.
+     */
+    private void markMessage(int flags) {
+        for (Node node = this; 
+                node!=null && 
+                (node.messageFlags & flags)!=flags; 
+                node = node.parent) {
+            node.messageFlags |= flags;
+            Node[] others = node.otherParents();
+            if (others!=null) {
+                for (Node other: others) {
+                    other.markMessage(flags);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Work out again whether this node contains a message,
+     * after some of its messages were removed, and if that
+     * changed, whether its ancestors do.
+     */
+    private void refreshMessageFlags() {
+        int flags = 0;
+        if (extras!=null && extras.errors!=null) {
+            for (Message error: extras.errors) {
+                flags |= error.isWarning() ? 
+                        CONTAINS_MESSAGE : 
+                        CONTAINS_MESSAGE | CONTAINS_ERROR;
+            }
+        }
+        if (flags!=(CONTAINS_MESSAGE | CONTAINS_ERROR)) {
+            flags |= childMessageFlags(new ArrayList<Node>());
+        }
+        if (flags!=messageFlags) {
+            messageFlags = (byte) flags;
+            if (parent!=null) {
+                parent.refreshMessageFlags();
+            }
+            Node[] others = otherParents();
+            if (others!=null) {
+                for (Node other: others) {
+                    other.refreshMessageFlags();
+                }
+            }
+        }
+    }
+    
+    private int childMessageFlags(List<Node> children) {
+        int flags = 0;
+        collectChildren(children);
+        for (int i=0, size=children.size(); i<size; i++) {
+            Node child = children.get(i);
+            if (child!=null) {
+                flags |= child.messageFlags;
+            }
+        }
+        children.clear();
+        return flags;
+    }
+    
+    private Node[] otherParents() {
+        return extras==null ? null : extras.otherParents;
+    }
+    
+    /**
+     * The node to which this node was most recently 
+     * attached as a child. After parsing, and after
+     * reading a tree back from the parse cache, it is the
+     * node from which a walk of the tree first reaches
+     * this node.
+     */
+    public Node getParent() {
+        return parent;
+    }
+    
+    /**
+     * Make every node beneath this node the child of the
+     * node from which a walk of the tree first reaches it,
+     * instead of the node to which the parser last 
+     * attached it, which may not be part of the tree, and
+     * record the other nodes from which the walk reaches
+     * it. Then work out again which nodes contain messages,
+     * so that {@link #containsError()} and 
+     * {@link #containsErrorOrWarning()} agree with a walk
+     * of the tree.
+     */
+    public void connectWalkedParents() {
+        //the nodes in the order the walk reaches them,
+        //and the nodes still to be reached, each with
+        //the node from which it is reached
+        List<Node> reached = new ArrayList<Node>();
+        List<Node> shared = new ArrayList<Node>();
+        List<Node> children = new ArrayList<Node>();
+        List<Node> pending = new ArrayList<Node>();
+        List<Node> pendingParents = new ArrayList<Node>();
+        pending.add(this);
+        pendingParents.add(null);
+        while (!pending.isEmpty()) {
+            int last = pending.size()-1;
+            Node node = pending.remove(last);
+            Node parent = pendingParents.remove(last);
+            if ((node.messageFlags & REACHED)!=0) {
+                boolean first = node.otherParents()==null;
+                node.addOtherParent(parent);
+                if (first && node.otherParents()!=null) {
+                    shared.add(node);
+                }
+                continue;
+            }
+            node.messageFlags = REACHED;
+            if (parent!=null) {
+                node.parent = parent;
+                if (node.extras!=null) {
+                    node.extras.otherParents = null;
+                }
+            }
+            reached.add(node);
+            node.collectChildren(children);
+            for (int i=children.size()-1; i>=0; i--) {
+                Node child = children.get(i);
+                if (child!=null) {
+                    pending.add(child);
+                    pendingParents.add(node);
+                }
+            }
+            children.clear();
+        }
+        //a node is reached after its parent, so going
+        //backwards, a node is done before its parent
+        for (int i=reached.size()-1; i>=0; i--) {
+            Node node = reached.get(i);
+            int flags = node.messageFlags & ~REACHED;
+            for (Message error: node.getErrors()) {
+                flags |= error.isWarning() ? 
+                        CONTAINS_MESSAGE : 
+                        CONTAINS_MESSAGE | CONTAINS_ERROR;
+            }
+            node.messageFlags = (byte) flags;
+            if (i>0) {
+                node.parent.messageFlags |= flags;
+            }
+        }
+        for (Node node: shared) {
+            if (node.messageFlags!=0) {
+                for (Node other: node.otherParents()) {
+                    other.markMessage(node.messageFlags);
+                }
+            }
+        }
+    }
+    
+    private void addOtherParent(Node other) {
+        if (other==parent) {
+            return;
+        }
+        Node[] others = otherParents();
+        if (others==null) {
+            extras().otherParents = new Node[] { other };
+        }
+        else {
+            for (Node node: others) {
+                if (node==other) {
+                    return;
+                }
+            }
+            Node[] more = new Node[others.length+1];
+            System.arraycopy(others, 0, more, 0, others.length);
+            more[others.length] = other;
+            extras.otherParents = more;
+        }
+    }
+    
+    /**
+     * Does this node, or any node beneath it, have an
+     * error? Warnings don't count as errors.
+     */
+    public boolean containsError() {
+        return (messageFlags & CONTAINS_ERROR)!=0;
+    }
+    
+    /**
+     * Does this node, or any node beneath it, have an
+     * error or warning?
+     */
+    public boolean containsErrorOrWarning() {
+        return (messageFlags & CONTAINS_MESSAGE)!=0;
     }
     
     public void addError(String message) {
@@ -310,6 +635,65 @@ public abstract class Node {
     
     public abstract void visitChildren(Visitor visitor);
     
+    /**
+     * Add the children of this node to the given list,
+     * in the order in which {@link #visitChildren(Visitor)}
+     * visits them.
+     */
+    public abstract void collectChildren(List<Node> children);
+    
+    /**
+     * The kind of this node, the {@code KIND} constant of
+     * its (non-abstract) class in {@link Tree}, a number
+     * less than {@link Tree#NODE_KIND_COUNT}, for switching
+     * on the type of a node. Unlike {@code instanceof}, a
+     * case for a class doesn't match its subclasses, which
+     * have kinds of their own.
+     * 
+     * The kinds are not stable: they are numbered in the
+     * order of the classes in Ceylon.nodes, so adding,
+     * removing or moving a node class there renumbers the
+     * kinds after it. A kind is only meaningful within a
+     * build, to code compiled against the same 
+     * {@link Tree}, and must never be persisted, except in
+     * data keyed by {@link TreeSerializer#VERSION}, which
+     * changes whenever the kinds do.
+     */
+    public final int getNodeKind() {
+        return kind;
+    }
+    
+    /**
+     * Trim the lists of children of this node to their
+     * size, once the tree is complete. The lists of 
+     * children of a node are always mutable, and stay
+     * mutable once trimmed, even if they're empty.
+     */
+    public void trimToSize() {}
+    
+    /**
+     * Add the given children to the given list of children
+     * of this node, making this node their parent, but
+     * without affecting the token range of this node.
+     */
+    protected <T extends Node> void addChildren(
+            List<T> children, List<? extends T> added) {
+        for (T child: added) {
+            adopt(child);
+        }
+        children.addAll(added);
+    }
+    
+    /**
+     * Trim the given list of children to its size.
+     */
+    protected static <T extends Node> void trimChildren(
+            List<T> children) {
+        if (children instanceof ArrayList) {
+            ((ArrayList<T>) children).trimToSize();
+        }
+    }
+    
     @Override
     public String toString() {
         StringWriter w = new StringWriter();
@@ -339,8 +723,39 @@ public abstract class Node {
 		    " at '" + e.getStackTrace()[0].toString() + "'";
 	}
 	
+    /**
+     * Write the tokens and text of this node, for the
+     * {@link TreeSerializer}.
+     */
+    void writeState(NodeOutput out) throws IOException {
+        if (scope!=null || extras!=null && 
+                (extras.errors!=null || extras.unit!=null)) {
+            throw new IOException("node has already been type checked");
+        }
+        out.writeToken(token);
+        out.writeToken(endToken);
+        out.writeToken(firstChildToken);
+        out.writeToken(lastChildToken);
+        out.writeString(extras==null ? null : extras.text);
+    }
+    
+    /**
+     * Read back the tokens and text of this node, written
+     * by {@link #writeState(NodeOutput)}, once its 
+     * children have been read, replacing the token range
+     * they gave the node.
+     */
+    void readState(NodeInput in) throws IOException {
+        token = in.readToken();
+        endToken = in.readToken();
+        firstChildToken = in.readToken();
+        lastChildToken = in.readToken();
+        setText(in.readString());
+    }
+    
 	public void connect(Node child) {
 		if (child!=null) {
+		    adopt(child);
 			Token childFirstChildToken = child.getFirstChildToken();
             if (childFirstChildToken!=null &&
                     (firstChildToken==null || 
@@ -355,5 +770,111 @@ public abstract class Node {
             }
 		}
 	}
+	
+	/**
+	 * Make this node the parent of the given child, 
+	 * without affecting the token range of this node.
+	 */
+	protected void adopt(Node child) {
+	    if (child!=null) {
+	        child.parent = this;
+	        if (child.messageFlags!=0) {
+	            markMessage(child.messageFlags);
+	        }
+	    }
+	}
+
+    /**
+     * The errors of a node, which keeps the node's record
+     * of whether it, and its ancestors, contain messages
+     * up to date when messages are removed.
+     */
+    @SuppressWarnings("serial")
+    private final class MessageList extends ArrayList<Message> {
+        
+        MessageList() {
+            super(2);
+        }
+        
+        void append(Message error) {
+            super.add(error);
+        }
+        
+        @Override
+        public boolean add(Message error) {
+            super.add(error);
+            refreshMessageFlags();
+            return true;
+        }
+        
+        @Override
+        public void add(int index, Message error) {
+            super.add(index, error);
+            refreshMessageFlags();
+        }
+        
+        @Override
+        public boolean addAll(Collection<? extends Message> errors) {
+            boolean changed = super.addAll(errors);
+            refreshMessageFlags();
+            return changed;
+        }
+        
+        @Override
+        public boolean addAll(int index, 
+                Collection<? extends Message> errors) {
+            boolean changed = super.addAll(index, errors);
+            refreshMessageFlags();
+            return changed;
+        }
+        
+        @Override
+        public Message set(int index, Message error) {
+            Message previous = super.set(index, error);
+            refreshMessageFlags();
+            return previous;
+        }
+        
+        @Override
+        public Message remove(int index) {
+            Message error = super.remove(index);
+            refreshMessageFlags();
+            return error;
+        }
+        
+        @Override
+        public boolean remove(Object error) {
+            boolean changed = super.remove(error);
+            refreshMessageFlags();
+            return changed;
+        }
+        
+        @Override
+        public boolean removeAll(Collection<?> errors) {
+            boolean changed = super.removeAll(errors);
+            refreshMessageFlags();
+            return changed;
+        }
+        
+        @Override
+        public boolean retainAll(Collection<?> errors) {
+            boolean changed = super.retainAll(errors);
+            refreshMessageFlags();
+            return changed;
+        }
+        
+        @Override
+        protected void removeRange(int from, int to) {
+            super.removeRange(from, to);
+            refreshMessageFlags();
+        }
+        
+        @Override
+        public void clear() {
+            super.clear();
+            refreshMessageFlags();
+        }
+        
+    }
 
 }
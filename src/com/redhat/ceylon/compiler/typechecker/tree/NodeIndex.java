@@ -0,0 +1,184 @@
+package com.redhat.ceylon.compiler.typechecker.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+
+import com.redhat.ceylon.model.typechecker.model.Scope;
+
+/**
+ * An index of the nodes of a tree by their offsets in
+ * the source file, for finding the innermost node at a
+ * given offset, or around a given range, without walking
+ * the whole tree.
+ *
+ * The spans of the nodes, from
+ * {@link Node#getStartIndex()} to
+ * {@link Node#getEndIndex()}, are sorted by start, and
+ * each span points to the nearest span before it which
+ * encloses it. A lookup finds the last span starting at
+ * or before the offset, by binary search, and climbs the
+ * enclosing spans until one of them contains the offset.
+ * Nodes without a token are left out, and a node without
+ * an end token ends where its token ends. Of several
+ * nodes with the same span, the one furthest from the
+ * root is found.
+ *
+ * The index is a snapshot of the tree when it was built,
+ * and isn't updated when the tree changes.
+ */
+public class NodeIndex {
+
+    private final Node[] nodes;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] enclosing;
+
+    public NodeIndex(Node root) {
+        final List<Node> list = new ArrayList<Node>();
+        IterativeWalker.walk(new Visitor() {
+            @Override
+            public boolean enter(Node that) {
+                list.add(that);
+                return true;
+            }
+        },
+        root);
+        int size = list.size();
+        final int[] unsortedStarts = new int[size];
+        final int[] unsortedEnds = new int[size];
+        List<Integer> positioned = new ArrayList<Integer>(size);
+        for (int i=0; i<size; i++) {
+            Node node = list.get(i);
+            Token token = node.getToken();
+            Token endToken = node.getEndToken();
+            if (endToken==null) {
+                //as in Node.getEndIndex()
+                endToken = token;
+            }
+            if (token instanceof CommonToken &&
+                    endToken instanceof CommonToken) {
+                int start = ((CommonToken) token).getStartIndex();
+                int end = ((CommonToken) endToken).getStopIndex()+1;
+                if (start>=0 && end>=start) {
+                    unsortedStarts[i] = start;
+                    unsortedEnds[i] = end;
+                    positioned.add(i);
+                }
+            }
+        }
+        //sort by start, then the longest span first,
+        //then in the order of the walk, so that a node
+        //comes after the nodes which enclose it
+        Integer[] order =
+                positioned.toArray(new Integer[positioned.size()]);
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer x, Integer y) {
+                int i = x, j = y;
+                if (unsortedStarts[i]!=unsortedStarts[j]) {
+                    return unsortedStarts[i]<unsortedStarts[j] ? -1 : 1;
+                }
+                if (unsortedEnds[i]!=unsortedEnds[j]) {
+                    return unsortedEnds[i]>unsortedEnds[j] ? -1 : 1;
+                }
+                return i<j ? -1 : i>j ? 1 : 0;
+            }
+        });
+        int count = order.length;
+        nodes = new Node[count];
+        starts = new int[count];
+        ends = new int[count];
+        enclosing = new int[count];
+        for (int k=0; k<count; k++) {
+            int i = order[k];
+            nodes[k] = list.get(i);
+            starts[k] = unsortedStarts[i];
+            ends[k] = unsortedEnds[i];
+        }
+        //the spans which are still open, innermost last
+        int[] open = new int[16];
+        int depth = 0;
+        for (int k=0; k<count; k++) {
+            while (depth>0 && ends[open[depth-1]]<ends[k]) {
+                depth--;
+            }
+            enclosing[k] = depth==0 ? -1 : open[depth-1];
+            if (depth==open.length) {
+                open = Arrays.copyOf(open, depth*2);
+            }
+            open[depth++] = k;
+        }
+    }
+
+    /**
+     * The number of nodes in the index.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * The innermost node containing the character at the
+     * given offset, or null if there is none.
+     */
+    public Node findNode(int offset) {
+        return findNode(offset, offset+1);
+    }
+
+    /**
+     * The innermost node containing the whole range from
+     * the given start offset up to, and not including, the
+     * given end offset, or null if there is none. An empty
+     * range, for example a caret, is contained in a node
+     * which it touches, even just after its last character,
+     * and where two nodes touch, the node which starts at
+     * the offset is found.
+     */
+    public Node findNode(int startOffset, int endOffset) {
+        int k = lastStartingAt(startOffset);
+        while (k>=0 && ends[k]<endOffset) {
+            k = enclosing[k];
+        }
+        return k<0 ? null : nodes[k];
+    }
+
+    /**
+     * The scope of the innermost node, containing the
+     * character at the given offset, which has a scope,
+     * or null if there is none.
+     */
+    public Scope findScope(int offset) {
+        int k = lastStartingAt(offset);
+        while (k>=0 &&
+                (ends[k]<=offset ||
+                 nodes[k].getScope()==null)) {
+            k = enclosing[k];
+        }
+        return k<0 ? null : nodes[k].getScope();
+    }
+
+    /**
+     * The index of the last span which starts at or
+     * before the given offset, or -1 if there is none.
+     */
+    private int lastStartingAt(int offset) {
+        int low = 0;
+        int high = starts.length;
+        while (low<high) {
+            int mid = (low+high) >>> 1;
+            if (starts[mid]<=offset) {
+                low = mid+1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low-1;
+    }
+
+}
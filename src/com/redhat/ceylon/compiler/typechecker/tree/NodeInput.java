@@ -0,0 +1,26 @@
+package com.redhat.ceylon.compiler.typechecker.tree;
+
+import java.io.IOException;
+
+import org.antlr.runtime.Token;
+
+/**
+ * Where a {@link TreeSerializer} reads a tree back from.
+ */
+public interface NodeInput {
+    
+    int readInt() throws IOException;
+    
+    boolean readBoolean() throws IOException;
+    
+    /**
+     * @return the string, or null
+     */
+    String readString() throws IOException;
+    
+    /**
+     * @return the token, or null
+     */
+    Token readToken() throws IOException;
+    
+}
@@ -0,0 +1,26 @@
+package com.redhat.ceylon.compiler.typechecker.tree;
+
+import java.io.IOException;
+
+import org.antlr.runtime.Token;
+
+/**
+ * Where a {@link TreeSerializer} writes a tree.
+ */
+public interface NodeOutput {
+    
+    void writeInt(int value) throws IOException;
+    
+    void writeBoolean(boolean value) throws IOException;
+    
+    /**
+     * @param value the string, or null
+     */
+    void writeString(String value) throws IOException;
+    
+    /**
+     * @param token the token, or null
+     */
+    void writeToken(Token token) throws IOException;
+    
+}
@@ -322,50 +322,13 @@ public class TreeUtil {
     }
 
     static boolean hasError(Node node, 
-            final boolean includeWarnings) {
-        // we use an exception to get out of the visitor 
-        // as fast as possible when an error is found
-        // TODO: wtf?! because it's the common case that
-        //       a node has an error? that's just silly
-        @SuppressWarnings("serial")
-        class ErrorFoundException extends RuntimeException {}
-        class ErrorVisitor extends Visitor {
-            @Override
-            public void handleException(Exception e, Node that) {
-                if (e instanceof ErrorFoundException) {
-                    throw (ErrorFoundException) e;
-                }
-                super.handleException(e, that);
-            }
-            @Override
-            public void visitAny(Node that) {
-                if (that.getErrors().isEmpty()) {
-                    super.visitAny(that);
-                }
-                else if (includeWarnings) {
-                    throw new ErrorFoundException();
-                }
-                else {
-                    // UsageWarning don't count as errors
-                    for (Message error: that.getErrors()) {
-                        if (!error.isWarning()) {
-                            // get out fast
-                            throw new ErrorFoundException();
-                        }
-                    }
-                    // no real error, proceed
-                    super.visitAny(that);
-                }
-            }
-        }
-        ErrorVisitor ev = new ErrorVisitor();
-        try {
-            node.visit(ev);
-            return false;
-        }
-        catch (ErrorFoundException x) {
-            return true;
-        }
+            boolean includeWarnings) {
+        // nodes keep track of errors added to them or
+        // to their descendants, so there is no need to
+        // walk the subtree
+        return includeWarnings ? 
+                node.containsErrorOrWarning() : 
+                node.containsError();
     }
 
     public static void buildAnnotations(Tree.AnnotationList al, 
@@ -21,6 +21,7 @@ public class Generate {
         visitor(file);
         visitorAdaptor(file);
         validator(file);
+        serializer(file);
     }
     
     private static void tree(File file) throws Exception {
@@ -95,4 +96,16 @@ public class Generate {
         parser.nodeList();
     }
     
+    private static void serializer(File file) throws Exception {
+        InputStream is = new FileInputStream( file );
+        ANTLRInputStream input = new ANTLRInputStream(is);
+        SerializergenLexer lexer = new SerializergenLexer(input);
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        SerializergenParser parser = new SerializergenParser(tokens);
+        File out = new File( GENERATED_PACKAGE_DIR + "TreeSerializer.java" );
+        out.createNewFile();
+        Util.out=new PrintStream(out);
+        parser.nodeList();
+    }
+    
 }
@@ -329,6 +329,16 @@ public class AssertionVisitor extends Visitor {
         super.visitAny(that);
     }
     
+    /**
+     * Forget the errors and warnings found so far, before
+     * the assertions are run again.
+     */
+    public void reset() {
+        foundErrors = new ArrayList<Message>();
+        errors = 0;
+        warnings = 0;
+    }
+    
     public void print(boolean verbose) {
     	if(!verbose && errors == 0 && warnings == 0)
     		return;
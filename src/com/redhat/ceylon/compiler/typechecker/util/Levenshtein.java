@@ -34,65 +34,215 @@ public class Levenshtein {
      * between two strings is no greater than the sum Levenshtein distances from
      * a third string).
      * 
-     * Implementation uses dynamic programming (Wagner–Fischer algorithm), with
-     * only 2 rows of data. The space requirement is thus O(m) and the algorithm
-     * runs in O(mn).
+     * Strings of up to 64 characters are compared using the bit-parallel
+     * algorithm of Myers, in the formulation of Hyyrö, which runs in O(n).
+     * Longer strings use dynamic programming (Wagner–Fischer algorithm) with
+     * only 2 rows of data, which are reused between calls on the same thread.
      * 
      * @param s1
      * @param s2
      * @return 
      */
     public double distance(String s1, String s2) {
-        if (s1.equals(s2)){
+        return distance(s1, s2, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * The Levenshtein distance between two words, if it is no greater than
+     * the given limit, or some value greater than the limit otherwise. 
+     * Giving up as soon as the distance is known to exceed the limit makes
+     * this much faster than computing the exact distance of dissimilar words.
+     * 
+     * Dynamic programming only computes the diagonal band of the table 
+     * within the limit (Ukkonen's cutoff), and stops after the first row
+     * which is entirely above the limit.
+     * 
+     * @param s1
+     * @param s2
+     * @param limit the greatest distance of interest
+     * @return the distance, or a value greater than the limit
+     */
+    public int distance(String s1, String s2, int limit) {
+        if (s1.equals(s2)) {
             return 0;
         }
         
+        // make s1 the shorter string
+        if (s1.length() > s2.length()) {
+            String tmp = s1;
+            s1 = s2;
+            s2 = tmp;
+        }
+        
+        // the distance is at least the difference of the lengths
+        if (s2.length() - s1.length() > limit) {
+            return limit + 1;
+        }
+        
         if (s1.length() == 0) {
             return s2.length();
         }
         
-        if (s2.length() == 0) {
-            return s1.length();
+        if (s1.length() <= 64) {
+            return myers(s1, s2, limit);
         }
-
-        // create two work vectors of integer distances
-        int[] v0 = new int[s2.length() + 1];
-        int[] v1 = new int[s2.length() + 1];
+        else {
+            return wagnerFischer(s1, s2, limit);
+        }
+    }
+    
+    /**
+     * Work arrays, reused by every call on the same thread.
+     */
+    private static final class Buffers {
+        // bit masks of the positions of each ASCII character in 
+        // the pattern, always left zeroed after use
+        final long[] peq = new long[128];
+        int[] v0 = new int[0];
+        int[] v1 = new int[0];
+    }
+    
+    private static final ThreadLocal<Buffers> buffers = 
+            new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+    
+    /**
+     * Bit-parallel edit distance, where the pattern p has at 
+     * most 64 characters, and is no longer than the text t.
+     * Bit i of the vectors represents the vertical difference
+     * between rows i and i+1 of the dynamic programming table,
+     * one column at a time.
+     */
+    private static int myers(String p, String t, int limit) {
+        int m = p.length();
+        int n = t.length();
+        long[] peq = buffers.get().peq;
+        for (int i = 0; i < m; i++) {
+            char c = p.charAt(i);
+            if (c < 128) {
+                peq[c] |= 1L << i;
+            }
+        }
+        
+        long last = 1L << (m - 1);
+        long pv = -1L; // positive vertical differences
+        long mv = 0L;  // negative vertical differences
+        int score = m;
+        for (int j = 0; j < n; j++) {
+            char c = t.charAt(j);
+            long eq = c < 128 ? peq[c] : positions(p, c);
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & last) != 0) {
+                score++;
+            }
+            else if ((mh & last) != 0) {
+                score--;
+            }
+            ph = (ph << 1) | 1L;
+            mh = mh << 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+            // each remaining column lowers the score by at most 1
+            if (score - (n - j - 1) > limit) {
+                score = limit + 1;
+                break;
+            }
+        }
+        
+        for (int i = 0; i < m; i++) {
+            char c = p.charAt(i);
+            if (c < 128) {
+                peq[c] = 0L;
+            }
+        }
+        return score;
+    }
+    
+    private static long positions(String p, char c) {
+        long result = 0L;
+        for (int i = 0; i < p.length(); i++) {
+            if (p.charAt(i) == c) {
+                result |= 1L << i;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Banded dynamic programming, where s1 is no longer than s2, 
+     * and the difference of their lengths is within the limit.
+     */
+    private static int wagnerFischer(String s1, String s2, int limit) {
+        int n1 = s1.length();
+        int n2 = s2.length();
+        // the distance is at most the length of the longer string
+        int k = Math.min(limit, n2);
+        // stands for every value outside the band, all of which 
+        // are greater than k
+        int outside = k + 1;
+        
+        Buffers b = buffers.get();
+        if (b.v0.length < n2 + 1) {
+            b.v0 = new int[n2 + 1];
+            b.v1 = new int[n2 + 1];
+        }
+        int[] v0 = b.v0;
+        int[] v1 = b.v1;
         int[] vtemp;
-
+        
         // initialize v0 (the previous row of distances)
         // this row is A[0][i]: edit distance for an empty s
         // the distance is just the number of characters to delete from t
-        for (int i = 0; i < v0.length; i++) {
-            v0[i] = i;
+        for (int j = 0; j <= k; j++) {
+            v0[j] = j;
+        }
+        if (k < n2) {
+            v0[k + 1] = outside;
         }
         
-        for (int i = 0; i < s1.length(); i++) {
-            // calculate v1 (current row distances) from the previous row v0
-            // first element of v1 is A[i+1][0]
-            //   edit distance is delete (i+1) chars from s to match empty t
-            v1[0] = i + 1;
-
-            // use formula to fill in the rest of the row
-            for (int j = 0; j < s2.length(); j++) {
-                int cost = (s1.charAt(i) == s2.charAt(j)) ? 0 : 1;
-                v1[j + 1] = Math.min(
-                        v1[j] + 1,              // Cost of insertion
+        for (int i = 0; i < n1; i++) {
+            // the band of row i+1
+            int lo = Math.max(1, i + 1 - k);
+            int hi = Math.min(n2, i + 1 + k);
+            
+            v1[lo - 1] = lo == 1 ? i + 1 : outside;
+            int min = v1[lo - 1];
+            
+            char c = s1.charAt(i);
+            for (int j = lo; j <= hi; j++) {
+                int cost = (c == s2.charAt(j - 1)) ? 0 : 1;
+                int d = Math.min(
+                        v1[j - 1] + 1,              // Cost of insertion
                         Math.min(
-                                v0[j + 1] + 1,  // Cost of remove
-                                v0[j] + cost)); // Cost of substitution
+                                v0[j] + 1,          // Cost of remove
+                                v0[j - 1] + cost)); // Cost of substitution
+                v1[j] = d;
+                if (d < min) {
+                    min = d;
+                }
+            }
+            if (hi < n2) {
+                v1[hi + 1] = outside;
             }
             
-            // copy v1 (current row) to v0 (previous row) for next iteration
-            //System.arraycopy(v1, 0, v0, 0, v0.length);
+            if (min > k) {
+                return limit + 1;
+            }
             
             // Flip references to current and previous row
             vtemp = v0;
             v0 = v1;
             v1 = vtemp;
-                
         }
-
-        return v0[s2.length()];
+        
+        int distance = v0[n2];
+        return distance > limit ? limit + 1 : distance;
     }
 }
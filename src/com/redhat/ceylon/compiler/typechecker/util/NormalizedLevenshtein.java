@@ -52,4 +52,34 @@ public class NormalizedLevenshtein {
         return 1.0 - distance(s1, s2);
     }
     
+    /**
+     * The similarity of the two strings, if it is at least the given 
+     * minimum, or negative infinity otherwise. This is faster than 
+     * computing the exact similarity of dissimilar strings, since the 
+     * edit distance need only be computed up to the greatest distance 
+     * which still gives the minimum similarity.
+     */
+    public double similarity(String s1, String s2, double minimum) {
+        int max = Math.max(s1.length(), s2.length());
+        if (max == 0) {
+            return similarity(s1, s2);
+        }
+        // the greatest distance giving at least the minimum similarity,
+        // computed exactly as similarity() would compute it
+        int limit = (int) Math.min(max, Math.floor((1.0 - minimum) * max));
+        while (limit < max && 1.0 - (double) (limit + 1) / max >= minimum) {
+            limit++;
+        }
+        while (limit >= 0 && 1.0 - (double) limit / max < minimum) {
+            limit--;
+        }
+        if (limit < 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        int distance = l.distance(s1, s2, limit);
+        return distance > limit ? 
+                Double.NEGATIVE_INFINITY : 
+                1.0 - (double) distance / max;
+    }
+    
 }
@@ -0,0 +1,330 @@
+package com.redhat.ceylon.compiler.typechecker.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.redhat.ceylon.compiler.typechecker.context.Phase;
+import com.redhat.ceylon.compiler.typechecker.context.PhaseListener;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
+import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
+
+/**
+ * A {@link PhaseListener} which records the time taken,
+ * and the memory allocated, by lexing and parsing every
+ * source file, and by every phase and visitor for every
+ * unit, and writes them out either as a JSON
+ * summary, with the most expensive units first, or as a
+ * trace for the Chrome trace viewer,
+ * {@code chrome://tracing}, with a row for each thread.
+ *
+ * <code>
+ *     PhaseProfiler profiler = new PhaseProfiler();
+ *     TypeChecker typeChecker =
+ *     new TypeCheckerBuilder()
+ *         .addSrcDirectory(srcDirectory)
+ *         .phaseListener(profiler)
+ *         .getTypeChecker();
+ *     typeChecker.process();
+ *     profiler.writeJson(writer);
+ * </code>
+ *
+ * Lexing and parsing is reported as a phase named
+ * {@code PARSE}. Allocated memory is reported as -1 when
+ * the VM does not support measuring it.
+ */
+public class PhaseProfiler implements PhaseListener {
+
+    private static final String PARSE = "PARSE";
+
+    private static final class Event {
+        final String path;
+        final String phase;
+        final String visitor;
+        final long threadId;
+        final String threadName;
+        final long start;
+        final long nanos;
+        final long allocatedBytes;
+        Event(String path, String phase, String visitor,
+                long start, long nanos, long allocatedBytes) {
+            Thread thread = Thread.currentThread();
+            this.path = path;
+            this.phase = phase;
+            this.visitor = visitor;
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            this.start = start;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    private final Queue<Event> events =
+            new ConcurrentLinkedQueue<Event>();
+
+    @Override
+    public void visitorCompleted(PhasedUnit unit, Phase phase,
+            Visitor visitor,
+            long start, long nanos, long allocatedBytes) {
+        events.add(new Event(path(unit), phase.name(),
+                visitorName(visitor),
+                start, nanos, allocatedBytes));
+    }
+
+    @Override
+    public void phaseCompleted(PhasedUnit unit, Phase phase,
+            long start, long nanos, long allocatedBytes) {
+        events.add(new Event(path(unit), phase.name(), null,
+                start, nanos, allocatedBytes));
+    }
+
+    @Override
+    public void fileParsed(VirtualFile file,
+            long start, long nanos, long allocatedBytes) {
+        events.add(new Event(file.getPath(), PARSE, null,
+                start, nanos, allocatedBytes));
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void clear() {
+        events.clear();
+    }
+
+    private static String path(PhasedUnit unit) {
+        return unit.getUnitFile().getPath();
+    }
+
+    private static String visitorName(Visitor visitor) {
+        Class<?> type = visitor.getClass();
+        String name = type.getSimpleName();
+        if (name.isEmpty()) {
+            //an anonymous class
+            name = type.getName();
+            name = name.substring(name.lastIndexOf('.')+1);
+        }
+        return name;
+    }
+
+    /**
+     * Totals for a unit, a phase of a unit, or a visitor
+     * of a phase.
+     */
+    private static class Totals {
+        int runs;
+        long nanos;
+        long allocatedBytes;
+        void add(Event event) {
+            runs++;
+            nanos += event.nanos;
+            allocatedBytes =
+                    allocatedBytes<0 || event.allocatedBytes<0 ?
+                            -1 : allocatedBytes+event.allocatedBytes;
+        }
+    }
+
+    private static class PhaseTotals extends Totals {
+        final Map<String,Totals> visitors =
+                new LinkedHashMap<String,Totals>();
+    }
+
+    private static class UnitTotals extends Totals {
+        final String path;
+        final Map<String,PhaseTotals> phases =
+                new LinkedHashMap<String,PhaseTotals>();
+        UnitTotals(String path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * Write the time taken, and the memory allocated, by
+     * each unit, by each phase for the unit, and by each
+     * visitor in the phase, as JSON. Units are sorted by
+     * the total time taken, the most expensive first.
+     * Times are in nanoseconds.
+     */
+    public void writeJson(Writer writer) throws IOException {
+        Map<String,UnitTotals> totals =
+                new HashMap<String,UnitTotals>();
+        for (Event event: events) {
+            UnitTotals unit = totals.get(event.path);
+            if (unit==null) {
+                unit = new UnitTotals(event.path);
+                totals.put(event.path, unit);
+            }
+            PhaseTotals phase = unit.phases.get(event.phase);
+            if (phase==null) {
+                phase = new PhaseTotals();
+                unit.phases.put(event.phase, phase);
+            }
+            if (event.visitor==null) {
+                unit.add(event);
+                phase.add(event);
+            }
+            else {
+                Totals visitor =
+                        phase.visitors.get(event.visitor);
+                if (visitor==null) {
+                    visitor = new Totals();
+                    phase.visitors.put(event.visitor, visitor);
+                }
+                visitor.add(event);
+            }
+        }
+        List<UnitTotals> units =
+                new ArrayList<UnitTotals>(totals.values());
+        Collections.sort(units, new Comparator<UnitTotals>() {
+            @Override
+            public int compare(UnitTotals x, UnitTotals y) {
+                return Long.compare(y.nanos, x.nanos);
+            }
+        });
+
+        writer.write("{\"units\":[");
+        boolean firstUnit = true;
+        for (UnitTotals unit: units) {
+            if (!firstUnit) writer.write(',');
+            firstUnit = false;
+            writer.write("\n{\"path\":");
+            writeString(writer, unit.path);
+            writeTotals(writer, unit);
+            writer.write(",\"phases\":[");
+            boolean firstPhase = true;
+            for (Map.Entry<String,PhaseTotals> pe:
+                    unit.phases.entrySet()) {
+                if (!firstPhase) writer.write(',');
+                firstPhase = false;
+                writer.write("\n {\"phase\":");
+                writeString(writer, pe.getKey());
+                PhaseTotals phase = pe.getValue();
+                writeTotals(writer, phase);
+                writer.write(",\"visitors\":[");
+                boolean firstVisitor = true;
+                for (Map.Entry<String,Totals> ve:
+                        phase.visitors.entrySet()) {
+                    if (!firstVisitor) writer.write(',');
+                    firstVisitor = false;
+                    writer.write("\n  {\"visitor\":");
+                    writeString(writer, ve.getKey());
+                    writeTotals(writer, ve.getValue());
+                    writer.write('}');
+                }
+                writer.write("]}");
+            }
+            writer.write("]}");
+        }
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    private static void writeTotals(Writer writer, Totals totals)
+            throws IOException {
+        writer.write(",\"runs\":");
+        writer.write(Integer.toString(totals.runs));
+        writer.write(",\"nanos\":");
+        writer.write(Long.toString(totals.nanos));
+        writer.write(",\"allocatedBytes\":");
+        writer.write(Long.toString(totals.allocatedBytes));
+    }
+
+    /**
+     * Write every phase and visitor run as a complete
+     * event of the Chrome trace event format, which may
+     * be loaded into {@code chrome://tracing}. Visitors
+     * are nested inside the phase which ran them.
+     */
+    public void writeChromeTrace(Writer writer) throws IOException {
+        long origin = Long.MAX_VALUE;
+        for (Event event: events) {
+            origin = Math.min(origin, event.start);
+        }
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        Map<Long,String> threads =
+                new LinkedHashMap<Long,String>();
+        boolean first = true;
+        for (Event event: events) {
+            if (!first) writer.write(',');
+            first = false;
+            long tid = event.threadId;
+            if (!threads.containsKey(tid)) {
+                threads.put(tid, event.threadName);
+            }
+            writer.write("\n{\"name\":");
+            writeString(writer, event.visitor==null ?
+                    event.phase : event.visitor);
+            writer.write(",\"cat\":");
+            writer.write(event.visitor==null ?
+                    "\"phase\"" : "\"visitor\"");
+            writer.write(",\"ph\":\"X\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(tid));
+            writer.write(",\"ts\":");
+            writeMicros(writer, event.start-origin);
+            writer.write(",\"dur\":");
+            writeMicros(writer, event.nanos);
+            writer.write(",\"args\":{\"unit\":");
+            writeString(writer, event.path);
+            if (event.visitor!=null) {
+                writer.write(",\"phase\":");
+                writeString(writer, event.phase);
+            }
+            writer.write(",\"allocatedBytes\":");
+            writer.write(Long.toString(event.allocatedBytes));
+            writer.write("}}");
+        }
+        for (Map.Entry<Long,String> thread: threads.entrySet()) {
+            writer.write(",\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(thread.getKey()));
+            writer.write(",\"args\":{\"name\":");
+            writeString(writer, thread.getValue());
+            writer.write("}}");
+        }
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    private static void writeMicros(Writer writer, long nanos)
+            throws IOException {
+        writer.write(Long.toString(nanos/1000));
+        writer.write('.');
+        long fraction = nanos%1000;
+        if (fraction<100) writer.write('0');
+        if (fraction<10) writer.write('0');
+        writer.write(Long.toString(fraction));
+    }
+
+    private static void writeString(Writer writer, String string)
+            throws IOException {
+        writer.write('"');
+        for (int i=0; i<string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+            case '"': writer.write("\\\""); break;
+            case '\\': writer.write("\\\\"); break;
+            case '\n': writer.write("\\n"); break;
+            case '\r': writer.write("\\r"); break;
+            case '\t': writer.write("\\t"); break;
+            default:
+                if (c<0x20) {
+                    writer.write(String.format("\\u%04x", (int) c));
+                }
+                else {
+                    writer.write(c);
+                }
+            }
+        }
+        writer.write('"');
+    }
+
+}
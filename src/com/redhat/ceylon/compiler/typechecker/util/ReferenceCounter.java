@@ -4,7 +4,9 @@
  */
 package com.redhat.ceylon.compiler.typechecker.util;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
@@ -23,29 +25,46 @@ import com.redhat.ceylon.model.typechecker.model.Value;
  */
 public class ReferenceCounter extends Visitor {
 	
-	private Set<Declaration> referencedDeclarations = new HashSet<Declaration>();
+	/**
+	 * The names of the referenced declarations, indexed 
+	 * by their containing scope.
+	 */
+	private Map<Scope,Set<String>> referencedDeclarations = 
+	        new HashMap<Scope,Set<String>>();
 	
 	void referenced(Declaration d) {
-		referencedDeclarations.add(d);
+		add(d);
 		//TODO: check that the value is actually assigned!
 		if (d instanceof Value) {
 			Setter setter = ((Value) d).getSetter();
 			if (setter!=null) {
-				referencedDeclarations.add(setter);
+				add(setter);
 			}
 		}
 	}
 	
+	private void add(Declaration d) {
+	    Scope container = d.getContainer();
+	    String name = d.getName();
+	    if (container!=null && name!=null) {
+	        Set<String> names = 
+	                referencedDeclarations.get(container);
+	        if (names==null) {
+	            names = new HashSet<String>();
+	            referencedDeclarations.put(container, names);
+	        }
+	        names.add(name);
+	    }
+	}
+	
 	boolean isReferenced(Declaration d) {
-		for (Declaration rd: referencedDeclarations) {
-		    Scope container = rd.getContainer();
-            if (container!=null &&
-                    container.equals(d.getContainer()) &&
-		            rd.getName().equals(d.getName())) {
-		        return true;
-		    }
-		}
-		return false;
+	    Scope container = d.getContainer();
+	    if (container==null) {
+	        return false;
+	    }
+	    Set<String> names = 
+	            referencedDeclarations.get(container);
+	    return names!=null && names.contains(d.getName());
 	}
 	
 	@Override
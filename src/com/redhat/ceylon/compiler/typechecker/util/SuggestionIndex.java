@@ -0,0 +1,188 @@
+package com.redhat.ceylon.compiler.typechecker.util;
+
+import static java.lang.Character.isUpperCase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the name most similar to a misspelled name,
+ * among a fixed set of names. A name with the same
+ * initial case as the misspelled name is preferred,
+ * and otherwise the name with the greatest
+ * {@link NormalizedLevenshtein} similarity wins, or,
+ * of several equally similar names, the first one in
+ * the original collection.
+ *
+ * The names are grouped by initial case and length.
+ * Since the edit distance between two names is at least
+ * the difference of their lengths, groups of names too
+ * long or too short to beat the best match so far are
+ * skipped, and the distance to other names is only
+ * computed as far as needed to tell if they match at
+ * least as well. Suggestions are remembered, so a name
+ * which is misspelled several times is looked up only
+ * once.
+ */
+public class SuggestionIndex {
+
+    private static final NormalizedLevenshtein distance =
+            new NormalizedLevenshtein();
+
+    private final Group upper = new Group();
+    private final Group lower = new Group();
+
+    private final Map<String,String> suggestions =
+            new HashMap<String,String>();
+
+    public SuggestionIndex(Collection<String> names) {
+        int order = 0;
+        for (String name: names) {
+            Group group =
+                    isUpperCase(name.charAt(0)) ?
+                            upper : lower;
+            group.add(name, order++);
+        }
+    }
+
+    /**
+     * The name most similar to the given name, or null
+     * if there are no names at all.
+     */
+    public String suggest(String name) {
+        if (suggestions.containsKey(name)) {
+            return suggestions.get(name);
+        }
+        Group group;
+        if (isUpperCase(name.charAt(0))) {
+            group = upper.isEmpty() ? lower : upper;
+        }
+        else {
+            group = lower.isEmpty() ? upper : lower;
+        }
+        String suggestion = group.closest(name);
+        suggestions.put(name, suggestion);
+        return suggestion;
+    }
+
+    private static final class Candidate {
+        final String name;
+        final int order;
+        Candidate(String name, int order) {
+            this.name = name;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Names with the same initial case, indexed by their
+     * length.
+     */
+    private static final class Group {
+
+        private final List<List<Candidate>> byLength =
+                new ArrayList<List<Candidate>>();
+
+        void add(String name, int order) {
+            int length = name.length();
+            while (byLength.size()<=length) {
+                byLength.add(null);
+            }
+            List<Candidate> candidates = byLength.get(length);
+            if (candidates==null) {
+                candidates = new ArrayList<Candidate>();
+                byLength.set(length, candidates);
+            }
+            candidates.add(new Candidate(name, order));
+        }
+
+        boolean isEmpty() {
+            return byLength.isEmpty();
+        }
+
+        String closest(String name) {
+            int length = name.length();
+            Match match = new Match(name);
+            //visit the lengths in order of increasing
+            //difference from the given length, until no
+            //name that much shorter or longer could do
+            //as well as the best match so far
+            for (int diff=0; ; diff++) {
+                int shorter = length-diff;
+                int longer = length+diff;
+                if (shorter<1 && longer>=byLength.size()) {
+                    break;
+                }
+                boolean searched = false;
+                if (shorter>=1 && shorter<byLength.size() && 
+                        match.couldMatch(shorter)) {
+                    match.search(byLength.get(shorter));
+                    searched = true;
+                }
+                if (diff>0 && longer<byLength.size() && 
+                        match.couldMatch(longer)) {
+                    match.search(byLength.get(longer));
+                    searched = true;
+                }
+                if (!searched && match.best!=null) {
+                    break;
+                }
+            }
+            return match.best==null ? null : match.best.name;
+        }
+
+    }
+
+    private static final class Match {
+
+        final String name;
+        Candidate best;
+        double similarity;
+
+        Match(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Could a name of the given length be at least
+         * as similar as the best match so far?
+         */
+        boolean couldMatch(int length) {
+            return best==null || 
+                    bound(name.length(), length)>=similarity;
+        }
+
+        void search(List<Candidate> candidates) {
+            if (candidates!=null) {
+                for (Candidate candidate: candidates) {
+                    double s = best==null ?
+                            distance.similarity(name, 
+                                    candidate.name) :
+                            distance.similarity(name, 
+                                    candidate.name, 
+                                    similarity);
+                    if (best==null || s>similarity ||
+                            s==similarity && 
+                            candidate.order<best.order) {
+                        best = candidate;
+                        similarity = s;
+                    }
+                }
+            }
+        }
+
+        /**
+         * An upper bound for the similarity of a name of
+         * the given length to any name of another given
+         * length.
+         */
+        private static double bound(int length, int otherLength) {
+            return 1.0 - (double) Math.abs(length-otherLength)
+                    / Math.max(length, otherLength);
+        }
+    }
+
+}
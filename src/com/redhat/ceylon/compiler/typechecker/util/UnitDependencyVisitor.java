@@ -0,0 +1,66 @@
+package com.redhat.ceylon.compiler.typechecker.util;
+
+import com.redhat.ceylon.compiler.typechecker.context.TypecheckerUnit;
+import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
+import com.redhat.ceylon.model.typechecker.model.Declaration;
+import com.redhat.ceylon.model.typechecker.model.Unit;
+
+/**
+ * Records, on the unit of every declaration resolved 
+ * by a reference in the visited compilation unit, that
+ * the visited unit depends on it.
+ * 
+ * @see TypecheckerUnit#getDependentsOf()
+ */
+public class UnitDependencyVisitor extends Visitor {
+    
+    private final TypecheckerUnit unit;
+    
+    public UnitDependencyVisitor(TypecheckerUnit unit) {
+        this.unit = unit;
+    }
+    
+    private void dependsOn(Declaration d) {
+        if (d!=null) {
+            Unit declarationUnit = d.getUnit();
+            if (declarationUnit instanceof TypecheckerUnit &&
+                    declarationUnit!=unit) {
+                ((TypecheckerUnit) declarationUnit)
+                        .getDependentsOf()
+                        .add(unit.getFullPath());
+            }
+        }
+    }
+    
+    @Override
+    public void visit(Tree.MemberOrTypeExpression that) {
+        super.visit(that);
+        dependsOn(that.getDeclaration());
+    }
+    
+    @Override
+    public void visit(Tree.SimpleType that) {
+        super.visit(that);
+        dependsOn(that.getDeclarationModel());
+    }
+    
+    @Override
+    public void visit(Tree.ImportMemberOrType that) {
+        super.visit(that);
+        dependsOn(that.getDeclarationModel());
+    }
+    
+    @Override
+    public void visit(Tree.MemberLiteral that) {
+        super.visit(that);
+        dependsOn(that.getDeclaration());
+    }
+    
+    @Override
+    public void visit(Tree.DocLink that) {
+        super.visit(that);
+        dependsOn(that.getBase());
+    }
+    
+}
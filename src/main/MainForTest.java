@@ -1,11 +1,26 @@
 package main;
 import com.redhat.ceylon.compiler.typechecker.TypeChecker;
 import com.redhat.ceylon.compiler.typechecker.TypeCheckerBuilder;
+import com.redhat.ceylon.compiler.typechecker.analyzer.FlowAnalysisIndex;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
 import com.redhat.ceylon.compiler.typechecker.io.ClosableVirtualFile;
+import com.redhat.ceylon.compiler.typechecker.io.VFS;
+import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
+import com.redhat.ceylon.compiler.typechecker.tree.Message;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
+import com.redhat.ceylon.compiler.typechecker.tree.NodeIndex;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
 import com.redhat.ceylon.model.typechecker.model.Module;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Some hack before a proper unit test harness is put in place
@@ -74,6 +89,13 @@ public class MainForTest {
                 .getTypeChecker();
         typeChecker.process();
 
+        checkConcurrentParsing(new File("test/main"));
+        checkProcessChanges(new File("test/main"));
+        checkParseCache(new File("test/main"));
+        checkFlowAnalysisIndex(new File("test/main"));
+        checkNodeIndex(new File("test/main"));
+        checkErrorFlags(new File("test/main"));
+
         ClosableVirtualFile latestZippedLanguageSourceFile = 
                 MainHelper.getLatestZippedLanguageSourceFile();
         typeChecker = new TypeCheckerBuilder()
@@ -84,4 +106,231 @@ public class MainForTest {
         latestZippedLanguageSourceFile.close();
         System.out.println("Tests took " + ( (System.nanoTime()-start) / 1000000 ) + " ms");
     }
+
+    /**
+     * Type check the given source directory on the
+     * calling thread, and again with a pool of worker
+     * threads, and check that the results are the same.
+     */
+    private static void checkConcurrentParsing(File srcDir) {
+        String expected = MainHelper.typeCheck(
+                new TypeCheckerBuilder()
+                    .addSrcDirectory(srcDir));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            String actual = MainHelper.typeCheck(
+                    new TypeCheckerBuilder()
+                        .addSrcDirectory(srcDir)
+                        .forkJoinPool(pool));
+            MainHelper.checkSameResults(expected, actual, 
+                    "Type checking with a pool of threads");
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Type check a copy of the given source directory,
+     * declare a class which another unit of the same
+     * package already declares, type check just the
+     * changes, and check that the results are the same
+     * as when type checking the changed copy from scratch.
+     */
+    private static void checkProcessChanges(File srcDir) 
+            throws IOException {
+        File copy = Files.createTempDirectory("changes").toFile();
+        try {
+            MainHelper.copyDirectory(srcDir, copy);
+            RecordingAssertionVisitor assertions = 
+                    new RecordingAssertionVisitor();
+            TypeChecker typeChecker = new TypeCheckerBuilder()
+                    .verbose(false)
+                    .statistics(false)
+                    .assertionVisitor(assertions)
+                    .addSrcDirectory(copy)
+                    .getTypeChecker();
+            typeChecker.process();
+            File changed = new File(copy, "typing/minus.ceylon");
+            Writer writer = new FileWriter(changed, true);
+            try {
+                writer.write("\nclass Shadowing1() {}\n");
+            }
+            finally {
+                writer.close();
+            }
+            typeChecker.processChanges(
+                    Collections.singletonList(
+                            new VFS().getFromFile(changed)), 
+                    Collections.<VirtualFile>emptyList());
+            String expected = MainHelper.typeCheck(
+                    new TypeCheckerBuilder()
+                        .addSrcDirectory(copy));
+            MainHelper.checkSameResults(expected, 
+                    assertions.getOutput(), 
+                    "Type checking the changes");
+        }
+        finally {
+            MainHelper.deleteDirectory(copy);
+        }
+    }
+
+    /**
+     * Parse the given source directory, filling a parse
+     * cache, and parse it again from the cache, and check
+     * that the trees, and the results of type checking 
+     * them, are the same.
+     */
+    private static void checkParseCache(File srcDir) 
+            throws IOException {
+        File cache = Files.createTempDirectory("parsecache").toFile();
+        try {
+            TypeChecker parsed = new TypeCheckerBuilder()
+                    .verbose(false)
+                    .statistics(false)
+                    .addSrcDirectory(srcDir)
+                    .parseCacheDirectory(cache)
+                    .getTypeChecker();
+            if (cache.list().length==0) {
+                throw new RuntimeException("Nothing was cached");
+            }
+            TypeChecker cached = new TypeCheckerBuilder()
+                    .verbose(false)
+                    .statistics(false)
+                    .addSrcDirectory(srcDir)
+                    .parseCacheDirectory(cache)
+                    .getTypeChecker();
+            MainHelper.checkSameResults(
+                    MainHelper.describeTrees(parsed), 
+                    MainHelper.describeTrees(cached), 
+                    "Parsing from the parse cache");
+            MainHelper.checkSameResults(
+                    MainHelper.typeCheck(new TypeCheckerBuilder()
+                            .addSrcDirectory(srcDir)), 
+                    MainHelper.typeCheck(new TypeCheckerBuilder()
+                            .addSrcDirectory(srcDir)
+                            .parseCacheDirectory(cache)), 
+                    "Type checking from the parse cache");
+        }
+        finally {
+            MainHelper.deleteDirectory(cache);
+        }
+    }
+
+    /**
+     * Type check the given source directory, then run
+     * the specification and self reference analysis of
+     * every unit again, with and without a
+     * {@link FlowAnalysisIndex}, and check that they
+     * report the same errors. This must pass before
+     * {@link TypeCheckerBuilder#pruneFlowAnalysis(boolean)}
+     * can be on by default.
+     */
+    private static void checkFlowAnalysisIndex(File srcDir) {
+        TypeChecker typeChecker = new TypeCheckerBuilder()
+                .verbose(false)
+                .statistics(false)
+                .addSrcDirectory(srcDir)
+                .getTypeChecker();
+        typeChecker.process();
+        for (PhasedUnit pu: 
+                typeChecker.getPhasedUnits().getPhasedUnits()) {
+            FlowAnalysisIndex index = new FlowAnalysisIndex();
+            pu.getCompilationUnit().visit(index);
+            MainHelper.checkSameResults(
+                    MainHelper.flowAnalysisErrors(pu, null), 
+                    MainHelper.flowAnalysisErrors(pu, index), 
+                    "Flow analysis of " + 
+                            pu.getPathRelativeToSrcDir() + 
+                            " with an index");
+        }
+    }
+
+    /**
+     * Type check the given source directory, then look up
+     * ranges of every unit in a {@link NodeIndex}, and
+     * check that it finds the same nodes as a walk of the
+     * whole tree.
+     */
+    private static void checkNodeIndex(File srcDir) {
+        TypeChecker typeChecker = new TypeCheckerBuilder()
+                .verbose(false)
+                .statistics(false)
+                .addSrcDirectory(srcDir)
+                .getTypeChecker();
+        typeChecker.process();
+        for (PhasedUnit pu: 
+                typeChecker.getPhasedUnits().getPhasedUnits()) {
+            Tree.CompilationUnit cu = pu.getCompilationUnit();
+            NodeIndex index = new NodeIndex(cu);
+            Integer length = cu.getEndIndex();
+            if (length==null) {
+                continue;
+            }
+            //carets, single characters, and longer ranges
+            for (int offset=-1; offset<=length+1; offset+=13) {
+                for (int range: new int[] {0, 1, 25}) {
+                    Node expected = MainHelper.findNodeByWalk(cu, 
+                            offset, offset+range);
+                    Node actual = index.findNode(offset, 
+                            offset+range);
+                    if (expected!=actual) {
+                        throw new RuntimeException(
+                                "Node index of " + 
+                                pu.getPathRelativeToSrcDir() + 
+                                " found " + actual + 
+                                " instead of " + expected + 
+                                " at " + offset + "-" + 
+                                (offset+range));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Type check the given source directory, and check
+     * that every node knows whether it contains errors or
+     * warnings, as a walk of its subtree finds, also once
+     * the warnings, and then all messages, are removed.
+     */
+    private static void checkErrorFlags(File srcDir) {
+        TypeChecker typeChecker = new TypeCheckerBuilder()
+                .verbose(false)
+                .statistics(false)
+                .addSrcDirectory(srcDir)
+                .getTypeChecker();
+        typeChecker.process();
+        for (PhasedUnit pu: 
+                typeChecker.getPhasedUnits().getPhasedUnits()) {
+            Tree.CompilationUnit cu = pu.getCompilationUnit();
+            String path = pu.getPathRelativeToSrcDir();
+            MainHelper.checkErrorFlags(cu, 
+                    "Error flags of " + path);
+            cu.visit(new Visitor() {
+                @Override
+                public void visitAny(Node that) {
+                    Iterator<Message> errors = 
+                            that.getErrors().iterator();
+                    while (errors.hasNext()) {
+                        if (errors.next().isWarning()) {
+                            errors.remove();
+                        }
+                    }
+                    super.visitAny(that);
+                }
+            });
+            MainHelper.checkErrorFlags(cu, 
+                    "Error flags without warnings of " + path);
+            cu.visit(new Visitor() {
+                @Override
+                public void visitAny(Node that) {
+                    that.getErrors().clear();
+                    super.visitAny(that);
+                }
+            });
+            MainHelper.checkErrorFlags(cu, 
+                    "Error flags without messages of " + path);
+        }
+    }
 }
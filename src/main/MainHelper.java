@@ -1,9 +1,30 @@
 package main;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+
+import com.redhat.ceylon.compiler.typechecker.TypeChecker;
+import com.redhat.ceylon.compiler.typechecker.TypeCheckerBuilder;
+import com.redhat.ceylon.compiler.typechecker.analyzer.FlowAnalysisIndex;
+import com.redhat.ceylon.compiler.typechecker.analyzer.SelfReferenceVisitor;
+import com.redhat.ceylon.compiler.typechecker.analyzer.SpecificationVisitor;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
 import com.redhat.ceylon.compiler.typechecker.io.ClosableVirtualFile;
 import com.redhat.ceylon.compiler.typechecker.io.VFS;
+import com.redhat.ceylon.compiler.typechecker.tree.Message;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
+import com.redhat.ceylon.compiler.typechecker.tree.NodeIndex;
+import com.redhat.ceylon.compiler.typechecker.tree.TreeUtil;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
+import com.redhat.ceylon.model.typechecker.model.Declaration;
+import com.redhat.ceylon.model.typechecker.model.TypeDeclaration;
 
 /**
  * @author Emmanuel Bernard <emmanuel@hibernate.org>
@@ -22,4 +43,279 @@ public class MainHelper {
         String version = versions[versions.length-1]; //last
         return vfs.getFromZipFile( new File(langDir, version + "/ceylon.language-" + version + ".src") );
     }
+
+    /**
+     * Type check with the given builder, and return what
+     * the assertions report, unit by unit.
+     */
+    public static String typeCheck(TypeCheckerBuilder builder) {
+        RecordingAssertionVisitor assertions =
+                new RecordingAssertionVisitor();
+        builder.verbose(false)
+                .statistics(false)
+                .assertionVisitor(assertions)
+                .getTypeChecker()
+                .process();
+        return assertions.getOutput();
+    }
+
+    /**
+     * Fail if two type checkers reported different
+     * results.
+     */
+    public static void checkSameResults(String expected,
+            String actual, String description) {
+        if (!expected.equals(actual)) {
+            throw new RuntimeException(description +
+                    " gave different results, expected:\n" +
+                    expected + "but got:\n" + actual);
+        }
+    }
+
+    /**
+     * Copy a directory tree.
+     */
+    public static void copyDirectory(File from, File to) 
+            throws IOException {
+        to.mkdirs();
+        for (File file: from.listFiles()) {
+            File target = new File(to, file.getName());
+            if (file.isDirectory()) {
+                copyDirectory(file, target);
+            }
+            else {
+                Files.copy(file.toPath(), target.toPath());
+            }
+        }
+    }
+
+    /**
+     * Delete a directory tree.
+     */
+    public static void deleteDirectory(File dir) {
+        for (File file: dir.listFiles()) {
+            if (file.isDirectory()) {
+                deleteDirectory(file);
+            }
+            else {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * Describe every node of the trees of the given type
+     * checker, with its class, text, tokens and parent,
+     * so that the trees of two type checkers can be
+     * compared.
+     */
+    public static String describeTrees(TypeChecker typeChecker) {
+        final StringBuilder description = new StringBuilder();
+        for (PhasedUnit pu: 
+                typeChecker.getPhasedUnits().getPhasedUnits()) {
+            description.append(pu.getPathRelativeToSrcDir())
+                .append('\n');
+            final Map<Node,Integer> ids = 
+                    new IdentityHashMap<Node,Integer>();
+            pu.getCompilationUnit().visit(new Visitor() {
+                @Override
+                public void visitAny(Node that) {
+                    ids.put(that, ids.size());
+                    Node parent = that.getParent();
+                    description.append(ids.get(that))
+                        .append(' ')
+                        .append(that.getClass().getName())
+                        .append(" '")
+                        .append(that.getText())
+                        .append("' ")
+                        .append(describe(that.getToken()))
+                        .append(describe(that.getEndToken()))
+                        .append(describe(that.getMainToken()))
+                        .append(describe(that.getMainEndToken()))
+                        .append(" parent ");
+                    if (parent==null) {
+                        description.append("none");
+                    }
+                    else if (ids.containsKey(parent)) {
+                        description.append(ids.get(parent));
+                    }
+                    else {
+                        description.append(parent.getClass().getName())
+                            .append(describe(parent.getToken()));
+                    }
+                    description.append('\n');
+                    super.visitAny(that);
+                }
+            });
+        }
+        return description.toString();
+    }
+    
+    /**
+     * Run the {@link SpecificationVisitor} and the
+     * {@link SelfReferenceVisitor} of every declaration
+     * of the given unit, as flow analysis does, with the
+     * given index, or without an index if it is null, and
+     * describe the errors they add. The errors are then
+     * removed from the tree again.
+     */
+    public static String flowAnalysisErrors(PhasedUnit pu,
+            FlowAnalysisIndex index) {
+        StringBuilder description = new StringBuilder();
+        for (Declaration d: pu.getUnit().getDeclarations()) {
+            if (d.getName()!=null) {
+                description.append(addedErrors(pu, 
+                        new SpecificationVisitor(d, index)));
+                if (d instanceof TypeDeclaration) {
+                    TypeDeclaration td = (TypeDeclaration) d;
+                    description.append(addedErrors(pu, 
+                            new SelfReferenceVisitor(td, index)));
+                }
+            }
+        }
+        return description.toString();
+    }
+    
+    private static String addedErrors(PhasedUnit pu, 
+            Visitor visitor) {
+        final Map<Node,Integer> counts = 
+                new IdentityHashMap<Node,Integer>();
+        pu.getCompilationUnit().visit(new Visitor() {
+            @Override
+            public void visitAny(Node that) {
+                if (!counts.containsKey(that)) {
+                    counts.put(that, that.getErrors().size());
+                }
+                super.visitAny(that);
+            }
+        });
+        pu.getCompilationUnit().visit(visitor);
+        final StringBuilder description = new StringBuilder();
+        pu.getCompilationUnit().visit(new Visitor() {
+            @Override
+            public void visitAny(Node that) {
+                List<Message> errors = that.getErrors();
+                Integer count = counts.get(that);
+                int before = count==null ? 0 : count;
+                if (errors.size()>before) {
+                    for (Message error: 
+                            errors.subList(before, errors.size())) {
+                        description.append(error.getMessage())
+                            .append(" at ")
+                            .append(that.getLocation())
+                            .append('\n');
+                    }
+                    errors.subList(before, errors.size()).clear();
+                }
+                super.visitAny(that);
+            }
+        });
+        return description.toString();
+    }
+    
+    /**
+     * The innermost node of the given tree containing the
+     * range from the given start offset up to the given
+     * end offset, found by walking the whole tree, as
+     * {@link NodeIndex#findNode(int, int)} should find it.
+     */
+    public static Node findNodeByWalk(Node root, 
+            final int startOffset, final int endOffset) {
+        final Node[] found = new Node[1];
+        root.visit(new Visitor() {
+            @Override
+            public void visitAny(Node that) {
+                Integer start = that.getStartIndex();
+                Integer end = that.getEndIndex();
+                if (start!=null && end!=null && 
+                        start>=0 && end>=start && 
+                        start<=startOffset && endOffset<=end) {
+                    Node best = found[0];
+                    if (best==null) {
+                        found[0] = that;
+                    }
+                    else {
+                        int bestStart = best.getStartIndex();
+                        int bestLength = 
+                                best.getEndIndex()-bestStart;
+                        //where two nodes touch a caret, the
+                        //node which starts later is found
+                        if (startOffset==endOffset ? 
+                                start>bestStart || 
+                                start==bestStart && 
+                                    end-start<=bestLength :
+                                end-start<=bestLength) {
+                            found[0] = that;
+                        }
+                    }
+                }
+                super.visitAny(that);
+            }
+        });
+        return found[0];
+    }
+    
+    /**
+     * Does the given node, or any node beneath it, have an
+     * error, or, if warnings are included, an error or a
+     * warning? Found by walking the subtree, as 
+     * {@link TreeUtil#hasError(Node)} used to.
+     */
+    public static boolean hasErrorByWalk(Node node, 
+            final boolean includeWarnings) {
+        final boolean[] found = new boolean[1];
+        node.visit(new Visitor() {
+            @Override
+            public void visitAny(Node that) {
+                for (Message error: that.getErrors()) {
+                    if (includeWarnings || !error.isWarning()) {
+                        found[0] = true;
+                    }
+                }
+                if (!found[0]) {
+                    super.visitAny(that);
+                }
+            }
+        });
+        return found[0];
+    }
+    
+    /**
+     * Fail if {@link TreeUtil#hasError(Node)} or
+     * {@link TreeUtil#hasErrorOrWarning(Node)} disagree 
+     * with a walk of the subtree for any node of the given
+     * tree.
+     */
+    public static void checkErrorFlags(final Node root, 
+            final String description) {
+        root.visit(new Visitor() {
+            @Override
+            public void visitAny(Node that) {
+                if (TreeUtil.hasError(that)!=
+                        hasErrorByWalk(that, false) ||
+                    TreeUtil.hasErrorOrWarning(that)!=
+                        hasErrorByWalk(that, true)) {
+                    throw new RuntimeException(description + 
+                            " disagrees with a walk of the tree for " + 
+                            that.getNodeType() + " at " + 
+                            that.getLocation());
+                }
+                super.visitAny(that);
+            }
+        });
+    }
+    
+    private static String describe(Token token) {
+        if (token==null) {
+            return "[]";
+        }
+        CommonToken ct = (CommonToken) token;
+        return "[" + ct.getClass().getSimpleName() + 
+                " " + ct.getType() + 
+                " " + ct.getStartIndex() + 
+                "-" + ct.getStopIndex() + 
+                " " + ct.getTokenIndex() + 
+                " '" + ct.getText() + "']";
+    }
 }
@@ -0,0 +1,100 @@
+package main;
+
+import com.redhat.ceylon.compiler.typechecker.analyzer.AnalysisError;
+import com.redhat.ceylon.compiler.typechecker.analyzer.UnsupportedError;
+import com.redhat.ceylon.compiler.typechecker.analyzer.UsageWarning;
+import com.redhat.ceylon.compiler.typechecker.parser.LexError;
+import com.redhat.ceylon.compiler.typechecker.parser.ParseError;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
+import com.redhat.ceylon.compiler.typechecker.tree.UnexpectedError;
+import com.redhat.ceylon.compiler.typechecker.util.AssertionVisitor;
+import com.redhat.ceylon.model.typechecker.model.Unit;
+
+/**
+ * Records what the {@link AssertionVisitor} reports,
+ * instead of printing it, so that the results of two
+ * type checkers can be compared.
+ */
+public class RecordingAssertionVisitor extends AssertionVisitor {
+
+    private final StringBuilder output = new StringBuilder();
+
+    public RecordingAssertionVisitor() {
+        includeUsageWarnings(true);
+    }
+
+    /**
+     * Everything reported so far, one line per message.
+     */
+    public String getOutput() {
+        return output.toString();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        output.setLength(0);
+    }
+
+    @Override
+    protected void out(Node that, String message) {
+        record(message, that);
+    }
+
+    @Override
+    protected void out(Node that, LexError err) {
+        record("lex error [" + err.getMessage() + "] " +
+                err.getHeader(), that);
+    }
+
+    @Override
+    protected void out(Node that, ParseError err) {
+        record("parse error [" + err.getMessage() + "] " +
+                err.getHeader(), that);
+    }
+
+    @Override
+    protected void out(UnexpectedError err) {
+        record("unexpected error [" + err.getMessage() + "]",
+                err.getTreeNode());
+    }
+
+    @Override
+    protected void out(AnalysisError err) {
+        record("error [" + err.getMessage() + "]",
+                err.getTreeNode());
+    }
+
+    @Override
+    protected void out(UnsupportedError err) {
+        record("warning [" + err.getMessage() + "]",
+                err.getTreeNode());
+    }
+
+    @Override
+    protected void out(UsageWarning err) {
+        record("warning [" + err.getMessage() + "]",
+                err.getTreeNode());
+    }
+
+    private void record(String message, Node that) {
+        Unit unit = that.getUnit();
+        String file;
+        if (unit==null) {
+            file = null;
+        }
+        else if (unit.getRelativePath().isEmpty()) {
+            file = unit.getFilename();
+        }
+        else {
+            file = unit.getRelativePath();
+        }
+        output.append(message)
+            .append(" at ")
+            .append(that.getLocation())
+            .append(" of ")
+            .append(file)
+            .append('\n');
+    }
+
+}
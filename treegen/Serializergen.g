@@ -0,0 +1,262 @@
+grammar Serializergen;
+
+@parser::header {
+    package com.redhat.ceylon.compiler.typechecker.treegen;
+    import static com.redhat.ceylon.compiler.typechecker.treegen.Util.*;
+}
+@lexer::header {
+    package com.redhat.ceylon.compiler.typechecker.treegen;
+}
+
+@parser::members {
+    StringBuilder write = new StringBuilder();
+    StringBuilder create = new StringBuilder();
+    StringBuilder read = new StringBuilder();
+    StringBuilder signature = new StringBuilder();
+}
+
+nodeList : {
+           println("package com.redhat.ceylon.compiler.typechecker.tree;\n");
+           println("import java.io.IOException;");
+           println("import java.util.ArrayList;");
+           println("import java.util.IdentityHashMap;");
+           println("import java.util.List;");
+           println("import java.util.Map;");
+           println("import static com.redhat.ceylon.compiler.typechecker.tree.CustomTree.*;");
+           println("import static com.redhat.ceylon.compiler.typechecker.tree.CustomTree.Package;\n");
+           println("/**");
+           println(" * Writes a tree, as the parser produced it, to a");
+           println(" * {@link NodeOutput}, and reads it back from a");
+           println(" * {@link NodeInput}. Every node is written with its");
+           println(" * children, as declared in Ceylon.nodes, and with its");
+           println(" * tokens and text. A node which is the child of more");
+           println(" * than one node is written once, and read back as a");
+           println(" * single node, and every node gets back its parent,");
+           println(" * even if that parent is not part of the tree.");
+           println(" * The model and the errors of the nodes are never");
+           println(" * written, so only a tree which no phase has touched");
+           println(" * may be written.");
+           println(" */");
+           println("public class TreeSerializer {\n");
+           println("    private static final int NULL = -1;");
+           println("    private static final int REFERENCE = -2;\n");
+           println("    private final Map<Node,Integer> ids = new IdentityHashMap<Node,Integer>();");
+           println("    private final List<Node> nodes = new ArrayList<Node>();\n");
+           println("    private TreeSerializer() {}\n");
+           println("    /**");
+           println("     * Write the tree beneath the given node.");
+           println("     */");
+           println("    public static void write(NodeOutput out, Node root) throws IOException {");
+           println("        TreeSerializer serializer = new TreeSerializer();");
+           println("        serializer.writeNode(out, root);");
+           println("        serializer.writeDetachedParents(out);");
+           println("        serializer.writeParents(out);");
+           println("    }\n");
+           println("    /**");
+           println("     * Read back a tree written by {@link #write}.");
+           println("     */");
+           println("    public static Node read(NodeInput in) throws IOException {");
+           println("        TreeSerializer serializer = new TreeSerializer();");
+           println("        Node root = serializer.readNode(in);");
+           println("        serializer.readDetachedParents(in);");
+           println("        serializer.readParents(in);");
+           println("        return root;");
+           println("    }\n");
+           println("    /**");
+           println("     * The parser builds some nodes, attaches children");
+           println("     * to them, and then moves the children to other");
+           println("     * nodes, leaving them the parent they had. Write");
+           println("     * those parents too, so that they are the same");
+           println("     * when the tree is read back.");
+           println("     */");
+           println("    private void writeDetachedParents(NodeOutput out) throws IOException {");
+           println("        for (int i=0; i<nodes.size(); i++) {");
+           println("            Node parent = nodes.get(i).getParent();");
+           println("            if (parent!=null && !ids.containsKey(parent)) {");
+           println("                writeNode(out, parent);");
+           println("            }");
+           println("        }");
+           println("        out.writeInt(NULL);");
+           println("    }\n");
+           println("    private void readDetachedParents(NodeInput in) throws IOException {");
+           println("        while (readNode(in)!=null) {}");
+           println("    }\n");
+           println("    private void writeParents(NodeOutput out) throws IOException {");
+           println("        for (Node node: nodes) {");
+           println("            Node parent = node.getParent();");
+           println("            out.writeInt(parent==null ? NULL : ids.get(parent));");
+           println("        }");
+           println("    }\n");
+           println("    private void readParents(NodeInput in) throws IOException {");
+           println("        for (Node node: nodes) {");
+           println("            int id = in.readInt();");
+           println("            if (id!=NULL) {");
+           println("                nodes.get(id).adopt(node);");
+           println("            }");
+           println("        }");
+           println("    }\n");
+           println("    private static void checkClass(Node node, Class<?> nodeClass) throws IOException {");
+           println("        if (node.getClass()!=nodeClass) {");
+           println("            throw new IOException(\"unexpected node class: \" + node.getClass().getName());");
+           println("        }");
+           println("    }\n");
+           println("    private void writeList(NodeOutput out, List<? extends Node> list) throws IOException {");
+           println("        out.writeInt(list.size());");
+           println("        for (int i=0,l=list.size();i<l;i++) {");
+           println("            writeNode(out, list.get(i));");
+           println("        }");
+           println("    }\n");
+           println("    private <T extends Node> List<T> readList(NodeInput in, Class<T> type) throws IOException {");
+           println("        int size = in.readInt();");
+           println("        List<T> list = new ArrayList<T>(size);");
+           println("        for (int i=0;i<size;i++) {");
+           println("            list.add(type.cast(readNode(in)));");
+           println("        }");
+           println("        return list;");
+           println("    }\n");
+           }
+           (DESCRIPTION? node)+
+           EOF
+           {
+           println("    void writeNode(NodeOutput out, Node node) throws IOException {");
+           println("        if (node==null) {");
+           println("            out.writeInt(NULL);");
+           println("            return;");
+           println("        }");
+           println("        Integer id = ids.get(node);");
+           println("        if (id!=null) {");
+           println("            out.writeInt(REFERENCE);");
+           println("            out.writeInt(id);");
+           println("            return;");
+           println("        }");
+           println("        ids.put(node, nodes.size());");
+           println("        nodes.add(node);");
+           println("        out.writeInt(node.getNodeKind());");
+           println("        switch (node.getNodeKind()) {");
+           print(write.toString());
+           println("        default:");
+           println("            throw new IOException(\"unknown node kind: \" + node.getNodeKind());");
+           println("        }");
+           println("        CustomTree.writeCustomChildren(this, out, node);");
+           println("        node.writeState(out);");
+           println("    }\n");
+           println("    Node readNode(NodeInput in) throws IOException {");
+           println("        int kind = in.readInt();");
+           println("        if (kind==NULL) {");
+           println("            return null;");
+           println("        }");
+           println("        if (kind==REFERENCE) {");
+           println("            return nodes.get(in.readInt());");
+           println("        }");
+           println("        Node node = createNode(kind);");
+           println("        nodes.add(node);");
+           println("        readChildren(in, node);");
+           println("        CustomTree.readCustomChildren(this, in, node);");
+           println("        node.readState(in);");
+           println("        node.trimToSize();");
+           println("        return node;");
+           println("    }\n");
+           println("    //kept apart from readChildren(), so that neither");
+           println("    //method is too big to be compiled");
+           println("    private static Node createNode(int kind) throws IOException {");
+           println("        switch (kind) {");
+           print(create.toString());
+           println("        default:");
+           println("            throw new IOException(\"unknown node kind: \" + kind);");
+           println("        }");
+           println("    }\n");
+           println("    private void readChildren(NodeInput in, Node node) throws IOException {");
+           println("        switch (node.getNodeKind()) {");
+           print(read.toString());
+           println("        }");
+           println("    }\n");
+           println("    /**");
+           println("     * Changes whenever the declarations of the nodes");
+           println("     * change, including their order, and so the node");
+           println("     * kinds written with each node, so that a tree");
+           println("     * written by an earlier version is never read back.");
+           println("     */");
+           println("    public static final int VERSION = " + signature.toString().hashCode() + ";\n");
+           println("}");
+           }
+           ;
+
+node
+@init { StringBuilder readChildren = new StringBuilder(); }
+     : '^' '('
+       a='abstract'? n=NODE_NAME
+       { signature.append($a==null ? "" : "abstract ").append($n.text); }
+       { println("    private void write" + className($n.text) + "(NodeOutput out, Tree." + className($n.text) + " node) throws IOException {"); }
+       { if ($a==null) {
+             write.append("        case " + className($n.text) + ".KIND:\n");
+             write.append("            checkClass(node, " + className($n.text) + ".class);\n");
+             write.append("            write" + className($n.text) + "(out, (Tree." + className($n.text) + ") node);\n");
+             write.append("            break;\n");
+             create.append("        case " + className($n.text) + ".KIND:\n");
+             create.append("            return new " + className($n.text) + "(null);\n");
+             read.append("        case " + className($n.text) + ".KIND:\n");
+             read.append("            read" + className($n.text) + "(in, (Tree." + className($n.text) + ") node);\n");
+             read.append("            break;\n");
+         } }
+       (extendsNode { readChildren.append($extendsNode.read); })?
+       (DESCRIPTION? subnode { readChildren.append($subnode.read); })*
+       (DESCRIPTION? field { readChildren.append($field.read); })*
+       ')'
+       { println("    }\n"); }
+       { println("    private void read" + className($n.text) + "(NodeInput in, Tree." + className($n.text) + " node) throws IOException {"); }
+       { print(readChildren.toString()); }
+       { println("    }\n"); }
+       { signature.append(';'); }
+     ;
+
+extendsNode returns [String read] : ':' n=NODE_NAME
+              { signature.append(':').append($n.text); }
+              { println("        write" + className($n.text) + "(out, node);"); }
+              { $read = "        read" + className($n.text) + "(in, node);\n"; }
+            ;
+
+subnode returns [String read] : n=NODE_NAME '?'? f=FIELD_NAME
+          { signature.append(' ').append($n.text).append(' ').append($f.text); }
+          { println("        writeNode(out, node.get" + initialUpper($f.text) + "());"); }
+          { $read = "        node.set" + initialUpper($f.text) + "((Tree." + className($n.text) + ") readNode(in));\n"; }
+        | n=NODE_NAME '?'?
+          { signature.append(' ').append($n.text); }
+          { println("        writeNode(out, node.get" + className($n.text) + "());"); }
+          { $read = "        node.set" + className($n.text) + "((Tree." + className($n.text) + ") readNode(in));\n"; }
+        | mn=NODE_NAME '*'
+          { signature.append(' ').append($mn.text).append('*'); }
+          { println("        writeList(out, node.get" + className($mn.text) + "s());"); }
+          { $read = "        node.add" + className($mn.text) + "s(readList(in, Tree." + className($mn.text) + ".class));\n"; }
+        | mn=NODE_NAME '*' f=FIELD_NAME
+          { signature.append(' ').append($mn.text).append("* ").append($f.text); }
+          { println("        writeList(out, node.get" + initialUpper($f.text) + "s());"); }
+          { $read = "        node.add" + initialUpper($f.text) + "s(readList(in, Tree." + className($mn.text) + ".class));\n"; }
+        ;
+
+field returns [String read = ""] : 'abstract'? TYPE_NAME FIELD_NAME ';'
+      | 'boolean' f=FIELD_NAME ';'
+        { signature.append(" boolean ").append($f.text); }
+        { println("        out.writeBoolean(node.get" + initialUpper($f.text) + "());"); }
+        { $read = "        node.set" + initialUpper($f.text) + "(in.readBoolean());\n"; }
+      ;
+
+NODE_NAME : ('A'..'Z'|'_')+;
+
+FIELD_NAME : ('a'..'z') ('a'..'z'|'A'..'Z')*;
+TYPE_NAME : ('A'..'Z') ('a'..'z'|'A'..'Z'|'<'|'>')*;
+
+WS : (' ' | '\n' | '\t' | '\r' | '\u000C') { skip(); };
+
+CARAT : '^';
+
+LPAREN : '(';
+RPAREN : ')';
+
+MANY : '*'|'+';
+OPTIONAL : '?';
+
+EXTENDS : ':';
+
+SEMI : ';';
+
+DESCRIPTION : '\"' (~'\"')* '\"';
@@ -8,6 +8,10 @@ grammar Treegen;
     package com.redhat.ceylon.compiler.typechecker.treegen; 
 }
 
+@parser::members {
+    int kinds = 0;
+}
+
 nodeList : {
            println("package com.redhat.ceylon.compiler.typechecker.tree;\n");
            println("import static com.redhat.ceylon.compiler.typechecker.tree.Walker.*;\n");
@@ -17,12 +21,16 @@ nodeList : {
            }
            (nodeDescription? node)+ 
            EOF
+           { println("    /**\n     * The number of node kinds returned by\n     * {@link Node#getNodeKind()}. Like the kinds,\n     * local to a build, and not to be persisted.\n     */"); }
+           { println("    public static final int NODE_KIND_COUNT = " + kinds + ";\n"); }
            { println("}"); }
            ;
 
-node : '^' '(' 
+node
+@init { StringBuilder trim = new StringBuilder(); boolean concrete = true; }
+     : '^' '(' 
        { print("    public static "); }
-       ('abstract' { print("abstract "); } )?
+       ('abstract' { print("abstract "); concrete = false; } )?
        { print("class "); }
        n=NODE_NAME 
        { print(className($n.text)); }
@@ -30,7 +38,10 @@ node : '^' '('
        { println(" {\n"); }
        { println("        public " + className($n.text) + "(Token token) {" ); }
        { println("            super(token);" ); }
+       { if (concrete) println("            kind = KIND;" ); }
        { println("        }\n" ); }
+       { if (concrete) println("        /**\n         * The {@link Node#getNodeKind() kind} of this node\n         * class, which is local to a build, and not to be\n         * persisted.\n         */"); }
+       { if (concrete) println("        public static final int KIND = " + kinds++ + ";\n"); }
        { println("        @Override public void visit(Visitor visitor) {" ); }
        { println("            try {" ); }
        { println("                visitor.visit(this);" ); }
@@ -42,9 +53,18 @@ node : '^' '('
        { println("        @Override public void visitChildren(Visitor visitor) {" ); }
        { println("            walk" + className($n.text) +"(visitor, this);"); }      
        { println("        }\n" ); }
-       (memberDescription? subnode)*
+       { println("        @Override public void collectChildren(List<Node> children) {" ); }
+       { println("            collect" + className($n.text) +"(children, this);"); }
+       { println("        }\n" ); }
+       (memberDescription? subnode { trim.append($subnode.trim); })*
        (memberDescription? field)*
        ')' 
+       { if (trim.length()>0) {
+             println("        @Override public void trimToSize() {");
+             println("            super.trimToSize();");
+             print(trim.toString());
+             println("        }\n");
+         } }
        { println("    }\n"); }
      ;
 
@@ -61,7 +81,7 @@ memberDescription : d=DESCRIPTION
                     { println("        /** \n         * " + $d.text.replace("\"", "") + "\n         */"); }
                   ;
 
-subnode : 
+subnode returns [String trim = ""] : 
           n=NODE_NAME '?'? f=FIELD_NAME
           { println("        private " + className($n.text) + " " + $f.text + ";"); }
           { println("        public " + className($n.text) + " get" + initialUpper($f.text) + "() { return " + $f.text + "; }"); }
@@ -72,14 +92,18 @@ subnode :
           { println("        public void set" + className($n.text) + "(" + className($n.text) + " node) { " + fieldName($n.text) + " = node; connect(node); }\n"); }
         | mn=NODE_NAME '*'
           { println("        private List<" + className($mn.text) + "> " + fieldName($mn.text) + 
-                               "s = new ArrayList<" + className($mn.text) + ">(3);"); }
+                               "s = new ArrayList<" + className($mn.text) + ">();"); }
           { println("        public List<" + className($mn.text) + "> get" + className($mn.text) + "s() { return " + fieldName($mn.text) + "s; }"); }
-          { println("        public void add" + className($mn.text) + "(" + className($mn.text) + " node) { " + fieldName($mn.text) + "s.add(node); connect(node); }\n"); }
+          { println("        public void add" + className($mn.text) + "(" + className($mn.text) + " node) { " + fieldName($mn.text) + "s.add(node); connect(node); }"); }
+          { println("        public void add" + className($mn.text) + "s(List<" + className($mn.text) + "> nodes) { addChildren(" + fieldName($mn.text) + "s, nodes); }\n"); }
+          { $trim = "            trimChildren(" + fieldName($mn.text) + "s);\n"; }
         | mn=NODE_NAME '*' f=FIELD_NAME
           { println("        private List<" + className($mn.text) + "> " + $f.text + 
-                               "s = new ArrayList<" + className($mn.text) + ">(3);"); }
+                               "s = new ArrayList<" + className($mn.text) + ">();"); }
           { println("        public List<" + className($mn.text) + "> get" + initialUpper($f.text) + "s() { return " + $f.text + "s; }"); }
-          { println("        public void add" + initialUpper($f.text) + "(" + className($mn.text) + " node) { " + $f.text + "s.add(node); connect(node); }\n"); }
+          { println("        public void add" + initialUpper($f.text) + "(" + className($mn.text) + " node) { " + $f.text + "s.add(node); connect(node); }"); }
+          { println("        public void add" + initialUpper($f.text) + "s(List<" + className($mn.text) + "> nodes) { addChildren(" + $f.text + "s, nodes); }\n"); }
+          { $trim = "            trimChildren(" + $f.text + "s);\n"; }
         ;
 
 field : t=TYPE_NAME f=FIELD_NAME
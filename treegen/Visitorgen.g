@@ -14,7 +14,17 @@ nodeList : {
            println("import static com.redhat.ceylon.compiler.typechecker.tree.Tree.Package;\n");
            println("public abstract class Visitor {\n");
            println("    public void handleException(Exception e, Node that) { that.handleException(e, this); }\n");
-           println("    public void visitAny(Node that) { that.visitChildren(this); }\n");
+           println("    /**\n     * The fused visitor this visitor belongs to, if any.\n     */");
+           println("    FusedVisitor fusedVisitor;\n");
+           println("    /**\n     * Called by the {@link IterativeWalker} before the\n     * children of a node, which are skipped if this\n     * returns false.\n     */");
+           println("    public boolean enter(Node that) { return true; }\n");
+           println("    /**\n     * Called by the {@link IterativeWalker} after the\n     * children of a node.\n     */");
+           println("    public void exit(Node that) {}\n");
+           println("    public void visitAny(Node that) {");
+           println("        if (fusedVisitor==null || !fusedVisitor.descend(this, that)) {");
+           println("            that.visitChildren(this);");
+           println("        }");
+           println("    }\n");
            }
            (DESCRIPTION? node)+ 
            EOF
@@ -21,39 +21,51 @@ nodeList :
     { println("}"); }
            ;
 
-node : '^' '('
+node
+@init { StringBuilder collect = new StringBuilder(); }
+     : '^' '('
        'abstract'? n=NODE_NAME 
        { println("    public static void walk" + className($n.text) +"(Visitor visitor, " + className($n.text) + " node) {"); }
-       extendsNode?
-       (DESCRIPTION? subnode)*
+       { collect.append("    public static void collect" + className($n.text) +"(List<Node> children, " + className($n.text) + " node) {\n"); }
+       (extendsNode { collect.append($extendsNode.collect); })?
+       (DESCRIPTION? subnode { collect.append($subnode.collect); })*
        (DESCRIPTION? field)*
        ')'
        { println("    }\n"); }
+       { collect.append("    }\n"); }
+       { println(collect.toString()); }
      ;
 
-extendsNode : ':' 
+extendsNode returns [String collect] : ':' 
               n=NODE_NAME
               { println("        walk" + className($n.text) +"(visitor, node);"); }
+              { $collect = "        collect" + className($n.text) +"(children, node);\n"; }
             ;
 
-subnode : n=NODE_NAME '?'? f=FIELD_NAME
+subnode returns [String collect] : n=NODE_NAME '?'? f=FIELD_NAME
           { println("        if (node.get" + initialUpper($f.text) + "()!=null)"); }
           { println("            node.get" + initialUpper($f.text) + "().visit(visitor);"); }
+          { $collect = "        if (node.get" + initialUpper($f.text) + "()!=null)\n" +
+                       "            children.add(node.get" + initialUpper($f.text) + "());\n"; }
         | n=NODE_NAME '?'?
           { println("        if (node.get" + className($n.text) + "()!=null)"); }
           { println("            node.get" + className($n.text) + "().visit(visitor);"); }
+          { $collect = "        if (node.get" + className($n.text) + "()!=null)\n" +
+                       "            children.add(node.get" + className($n.text) + "());\n"; }
         | mn=NODE_NAME '*'
           { println("        List<"+className($mn.text)+"> "+className($mn.text)+"s = node.get" + className($mn.text) +"s();"); }
           { println("        for (int i=0,l=" + className($mn.text) + "s.size();i<l;i++){"); }
           { println("            "+className($mn.text)+" subnode = "+className($mn.text)+"s.get(i);"); }
           { println("            subnode.visit(visitor);"); }
           { println("        }"); }
+          { $collect = "        children.addAll(node.get" + className($mn.text) + "s());\n"; }
         | mn=NODE_NAME '*' f=FIELD_NAME
           { println("        List<"+className($mn.text)+"> "+className($mn.text)+"s = node.get" + initialUpper($f.text) +"s();"); }
           { println("        for (int i=0,l=" + className($mn.text) + "s.size();i<l;i++){"); }
           { println("            "+className($mn.text)+" subnode = "+className($mn.text)+"s.get(i);"); }
           { println("            subnode.visit(visitor);"); }
           { println("        }"); }
+          { $collect = "        children.addAll(node.get" + initialUpper($f.text) + "s());\n"; }
         ;
 
 field : 'abstract'? (TYPE_NAME|'boolean') FIELD_NAME ';'